@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+
+import java.io.{ DataInput, DataOutput }
+
+import org.apache.hadoop.io.Writable
+
+import com.asakusafw.runtime.model.DataModel
+import com.asakusafw.runtime.value.{ IntOption, LongOption, StringOption }
+
+class BenchmarkRecord extends DataModel[BenchmarkRecord] with Writable {
+
+  val key = new IntOption()
+  val value = new LongOption()
+  val label = new StringOption()
+
+  override def reset(): Unit = {
+    key.setNull()
+    value.setNull()
+    label.setNull()
+  }
+
+  override def copyFrom(other: BenchmarkRecord): Unit = {
+    key.copyFrom(other.key)
+    value.copyFrom(other.value)
+    label.copyFrom(other.label)
+  }
+
+  override def readFields(in: DataInput): Unit = {
+    key.readFields(in)
+    value.readFields(in)
+    label.readFields(in)
+  }
+
+  override def write(out: DataOutput): Unit = {
+    key.write(out)
+    value.write(out)
+    label.write(out)
+  }
+}
+
+object BenchmarkRecord {
+
+  def generate(size: Int, numKeys: Int): Array[BenchmarkRecord] = {
+    Array.tabulate(size) { i =>
+      val record = new BenchmarkRecord()
+      record.key.modify(i % numKeys)
+      record.value.modify(i.toLong)
+      record.label.modify(f"label-${i}%08d")
+      record
+    }
+  }
+
+  def generateGroups(numGroups: Int, groupSize: Int): Array[BenchmarkRecord] = {
+    Array.tabulate(numGroups * groupSize) { i =>
+      val record = new BenchmarkRecord()
+      record.key.modify(i / groupSize)
+      record.value.modify(i.toLong)
+      record.label.modify(f"label-${i}%08d")
+      record
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package aggregation
+
+import java.util.concurrent.TimeUnit
+
+import scala.collection.mutable
+
+import org.apache.spark.{ SparkConf, SparkContext }
+import org.openjdk.jmh.annotations._
+
+import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class AggregationBenchmark {
+
+  import AggregationBenchmark._ // scalastyle:ignore
+
+  @Param(Array("inPlace", "columnar", "external"))
+  var combiner: String = _
+
+  @Param(Array("1024", "65536"))
+  var numKeys: Int = _
+
+  var sc: SparkContext = _
+
+  @Setup
+  def setup(): Unit = {
+    sc = new SparkContext(
+      new SparkConf()
+        .setMaster("local[1]")
+        .setAppName(getClass.getSimpleName)
+        .set("spark.ui.enabled", false.toString))
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    sc.stop()
+    sc = null
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def combine(): Int = {
+    val aggregation =
+      if (combiner == "columnar") {
+        new ColumnarBenchmarkAggregation()
+      } else {
+        new BenchmarkAggregation(combiner == "inPlace")
+      }
+    val numKeys = this.numKeys
+    sc.parallelize(Seq(0), 1).mapPartitions { _ =>
+      val combiner = aggregation.valueCombiner()
+      combiner.insertAll(records(numKeys).iterator)
+      Iterator(combiner.iterator.size)
+    }.collect().head
+  }
+}
+
+object AggregationBenchmark {
+
+  final val NumRecords = 1024 * 1024
+
+  private[this] val cache = mutable.Map.empty[Int, Array[(ShuffleKey, BenchmarkRecord)]]
+
+  def records(numKeys: Int): Array[(ShuffleKey, BenchmarkRecord)] = {
+    cache.synchronized {
+      cache.getOrElseUpdate(numKeys,
+        BenchmarkRecord.generate(NumRecords, numKeys).map { record =>
+          (new ShuffleKey(WritableSerDe.serialize(record.key)), record)
+        })
+    }
+  }
+
+  class BenchmarkAggregation(override val inPlace: Boolean)
+    extends Aggregation[ShuffleKey, BenchmarkRecord, BenchmarkRecord] {
+
+    override def newCombiner(): BenchmarkRecord = new BenchmarkRecord()
+
+    override def initCombinerByValue(
+      combiner: BenchmarkRecord, value: BenchmarkRecord): BenchmarkRecord = {
+      combiner.copyFrom(value)
+      combiner
+    }
+
+    override def mergeValue(
+      combiner: BenchmarkRecord, value: BenchmarkRecord): BenchmarkRecord = {
+      combiner.value.add(value.value)
+      combiner
+    }
+
+    override def initCombinerByCombiner(
+      comb1: BenchmarkRecord, comb2: BenchmarkRecord): BenchmarkRecord = {
+      comb1.copyFrom(comb2)
+      comb1
+    }
+
+    override def mergeCombiners(
+      comb1: BenchmarkRecord, comb2: BenchmarkRecord): BenchmarkRecord = {
+      comb1.value.add(comb2.value)
+      comb1
+    }
+  }
+
+  class ColumnarBenchmarkAggregation extends BenchmarkAggregation(true) {
+
+    override def numColumns: Int = 1
+
+    override def initColumnsByValue(
+      columns: Array[Long], offset: Int, value: BenchmarkRecord): Unit = {
+      columns(offset) = value.value.get
+    }
+
+    override def mergeColumnsByValue(
+      columns: Array[Long], offset: Int, value: BenchmarkRecord): Unit = {
+      columns(offset) += value.value.get
+    }
+
+    override def initColumnsByCombiner(
+      columns: Array[Long], offset: Int, combiner: BenchmarkRecord): Unit = {
+      columns(offset) = combiner.value.get
+    }
+
+    override def mergeColumnsByCombiner(
+      columns: Array[Long], offset: Int, combiner: BenchmarkRecord): Unit = {
+      columns(offset) += combiner.value.get
+    }
+
+    override def writeColumns(
+      columns: Array[Long], offset: Int, combiner: BenchmarkRecord): BenchmarkRecord = {
+      combiner.value.modify(columns(offset))
+      combiner
+    }
+  }
+}
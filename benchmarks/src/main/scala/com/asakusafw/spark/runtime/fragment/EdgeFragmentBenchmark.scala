@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import com.asakusafw.spark.runtime.fragment.OutputFragmentBenchmark.BenchmarkOutputFragment
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class EdgeFragmentBenchmark {
+
+  import EdgeFragmentBenchmark._ // scalastyle:ignore
+
+  @Param(Array("2", "4", "8"))
+  var numChildren: Int = _
+
+  var records: Array[BenchmarkRecord] = _
+
+  var outputs: Array[OutputFragment[BenchmarkRecord]] = _
+
+  var fragment: Fragment[BenchmarkRecord] = _
+
+  @Setup
+  def setup(): Unit = {
+    records = BenchmarkRecord.generate(NumRecords, NumRecords)
+    outputs = Array.fill(numChildren)(new BenchmarkOutputFragment(-1))
+    fragment = new BenchmarkEdgeFragment(outputs.toArray[Fragment[BenchmarkRecord]])
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def addAndIterate(bh: Blackhole): Unit = {
+    var i = 0
+    while (i < records.length) {
+      fragment.reset()
+      fragment.add(records(i))
+      var j = 0
+      while (j < outputs.length) {
+        val iter = outputs(j).iterator
+        while (iter.hasNext) {
+          bh.consume(iter.next())
+        }
+        j += 1
+      }
+      i += 1
+    }
+  }
+}
+
+object EdgeFragmentBenchmark {
+
+  final val NumRecords = 1024
+
+  class BenchmarkEdgeFragment(children: Array[Fragment[BenchmarkRecord]])
+    extends EdgeFragment[BenchmarkRecord](children) {
+
+    override def newDataModel(): BenchmarkRecord = new BenchmarkRecord()
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import com.asakusafw.runtime.value.IntOption
+import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class GroupIndexBenchmark {
+
+  import GroupIndexBenchmark._ // scalastyle:ignore
+
+  @Param(Array("1024", "1048576"))
+  var numGroups: Int = _
+
+  @Param(Array("0.0", "0.5", "1.0"))
+  var missRatio: Double = _
+
+  @Param(Array("true", "false"))
+  var bloomFilter: Boolean = _
+
+  var index: GroupIndex[Int] = _
+
+  var probes: Array[Array[Byte]] = _
+
+  @Setup
+  def setup(): Unit = {
+    index = GroupIndex(
+      Iterator.range(0, numGroups).map(i => new ShuffleKey(encode(i)) -> Seq(i)),
+      if (bloomFilter) 0 else -1)
+    val random = new Random(0L)
+    probes = Array.fill(NumProbes) {
+      val i = random.nextInt(numGroups)
+      encode(if (random.nextDouble() < missRatio) numGroups + i else i)
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumProbes)
+  def lookup(bh: Blackhole): Unit = {
+    var i = 0
+    while (i < probes.length) {
+      val probe = probes(i)
+      bh.consume(index.lookup(probe, 0, probe.length))
+      i += 1
+    }
+  }
+}
+
+object GroupIndexBenchmark {
+
+  final val NumProbes = 4096
+
+  def encode(i: Int): Array[Byte] = WritableSerDe.serialize(new IntOption(i))
+}
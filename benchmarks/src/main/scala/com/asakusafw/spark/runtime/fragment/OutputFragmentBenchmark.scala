@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class OutputFragmentBenchmark {
+
+  import OutputFragmentBenchmark._ // scalastyle:ignore
+
+  @Param(Array("-1", "256"))
+  var bufferSize: Int = _
+
+  @Param(Array("1", "16"))
+  var fanOut: Int = _
+
+  var records: Array[BenchmarkRecord] = _
+
+  var fragment: OutputFragment[BenchmarkRecord] = _
+
+  @Setup
+  def setup(): Unit = {
+    records = BenchmarkRecord.generate(NumRecords, NumRecords)
+    fragment = new BenchmarkOutputFragment(bufferSize)
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def addAndIterate(bh: Blackhole): Unit = {
+    var i = 0
+    while (i < records.length) {
+      val record = records(i)
+      fragment.reset()
+      var j = 0
+      while (j < fanOut) {
+        fragment.add(record)
+        j += 1
+      }
+      val iter = fragment.iterator
+      while (iter.hasNext) {
+        bh.consume(iter.next())
+      }
+      i += 1
+    }
+  }
+}
+
+object OutputFragmentBenchmark {
+
+  final val NumRecords = 1024
+
+  class BenchmarkOutputFragment(bufferSize: Int)
+    extends OutputFragment[BenchmarkRecord](bufferSize) {
+
+    override def newDataModel(): BenchmarkRecord = new BenchmarkRecord()
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+package user
+
+import java.lang.{ Iterable => JIterable }
+import java.util.concurrent.TimeUnit
+
+import scala.collection.JavaConversions._
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import com.asakusafw.runtime.core.Result
+import com.asakusafw.runtime.flow.ArrayListBuffer
+import com.asakusafw.spark.runtime.fragment.OutputFragmentBenchmark.BenchmarkOutputFragment
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class CoGroupOperatorFragmentBenchmark {
+
+  import CoGroupOperatorFragmentBenchmark._ // scalastyle:ignore
+
+  @Param(Array("1", "16", "256"))
+  var groupSize: Int = _
+
+  @Param(Array("list", "iterable"))
+  var bufferType: String = _
+
+  var numGroups: Int = _
+
+  var records: Array[BenchmarkRecord] = _
+
+  var output: OutputFragment[BenchmarkRecord] = _
+
+  var fragment: CoGroupOperatorFragment = _
+
+  @Setup
+  def setup(): Unit = {
+    numGroups = math.max(NumRecords / groupSize, 1)
+    records = BenchmarkRecord.generateGroups(numGroups, groupSize)
+    output = new BenchmarkOutputFragment(-1)
+    fragment = new BenchmarkCoGroupOperatorFragment(
+      IndexedSeq(newBuffer(), newBuffer()), IndexedSeq(output))
+  }
+
+  private def newBuffer(): Buffer[BenchmarkRecord] = {
+    bufferType match {
+      case "list" =>
+        new ListLikeBuffer[BenchmarkRecord](new ArrayListBuffer[BenchmarkRecord]()) {
+          override def newDataModel(): BenchmarkRecord = new BenchmarkRecord()
+        }
+      case "iterable" =>
+        new IterableBuffer[BenchmarkRecord]()
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def cogroup(bh: Blackhole): Unit = {
+    var i = 0
+    while (i < numGroups) {
+      val from = i * groupSize
+      fragment.reset()
+      fragment.add(
+        IndexedSeq(
+          records.iterator.slice(from, from + groupSize),
+          records.iterator.slice(from, from + groupSize)))
+      val iter = output.iterator
+      while (iter.hasNext) {
+        bh.consume(iter.next())
+      }
+      i += 1
+    }
+  }
+}
+
+object CoGroupOperatorFragmentBenchmark {
+
+  final val NumRecords = 4096
+
+  class BenchmarkCoGroupOperatorFragment(
+    buffers: IndexedSeq[Buffer[BenchmarkRecord]],
+    children: IndexedSeq[Fragment[BenchmarkRecord]])
+    extends CoGroupOperatorFragment(buffers, children) {
+
+    override def cogroup(inputs: IndexedSeq[JIterable[_]], outputs: IndexedSeq[Result[_]]): Unit = {
+      val output = outputs(0).asInstanceOf[Result[BenchmarkRecord]]
+      inputs.foreach { input =>
+        input.asInstanceOf[JIterable[BenchmarkRecord]].foreach(output.add)
+      }
+    }
+  }
+}
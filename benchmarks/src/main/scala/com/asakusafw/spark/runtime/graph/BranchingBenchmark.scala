@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package graph
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import com.asakusafw.spark.runtime.fragment.{ Fragment, OutputFragment }
+import com.asakusafw.spark.runtime.fragment.EdgeFragmentBenchmark.BenchmarkEdgeFragment
+import com.asakusafw.spark.runtime.fragment.OutputFragmentBenchmark.BenchmarkOutputFragment
+import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.rdd.{ Branch, BranchKey, ShuffleKey }
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class BranchingBenchmark {
+
+  import BranchingBenchmark._ // scalastyle:ignore
+
+  @Param(Array("1", "2", "4"))
+  var numBranches: Int = _
+
+  var records: Array[BenchmarkRecord] = _
+
+  var fragment: Fragment[BenchmarkRecord] = _
+
+  var outputs: Map[BranchKey, OutputFragment[BenchmarkRecord]] = _
+
+  @Setup
+  def setup(): Unit = {
+    records = BenchmarkRecord.generate(NumRecords, NumRecords / 4) // scalastyle:ignore
+    outputs = (0 until numBranches).map { i =>
+      BranchKey(i) -> (new BenchmarkOutputFragment(-1): OutputFragment[BenchmarkRecord])
+    }.toMap
+    fragment =
+      if (numBranches == 1) {
+        outputs.head._2
+      } else {
+        new BenchmarkEdgeFragment(outputs.values.toArray[Fragment[BenchmarkRecord]])
+      }
+  }
+
+  def shuffleKey(branch: BranchKey, value: BenchmarkRecord): ShuffleKey = {
+    new ShuffleKey(
+      WritableSerDe.serialize(value.key),
+      WritableSerDe.serialize(value.value))
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def iterateFragments(bh: Blackhole): Unit = {
+    records.iterator.flatMap { value =>
+      fragment.reset()
+      fragment.add(value)
+      outputs.iterator.flatMap {
+        case (key, output) =>
+          output.iterator.map(value => (Branch(key, shuffleKey(key, value)), value))
+      }
+    }.foreach(bh.consume(_))
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def iterateFragmentsAndSerialize(bh: Blackhole): Unit = {
+    records.iterator.flatMap { value =>
+      fragment.reset()
+      fragment.add(value)
+      outputs.iterator.flatMap {
+        case (key, output) =>
+          output.iterator.map(value => (Branch(key, shuffleKey(key, value)), value))
+      }
+    }.map {
+      case (bk, value) => (bk, WritableSerDe.serialize(value))
+    }.foreach(bh.consume(_))
+  }
+}
+
+object BranchingBenchmark {
+
+  final val NumRecords = 1024
+}
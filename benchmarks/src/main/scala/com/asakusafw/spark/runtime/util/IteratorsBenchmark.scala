@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package util
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import com.asakusafw.spark.runtime.util.Iterators._
+
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+class IteratorsBenchmark {
+
+  import IteratorsBenchmark._ // scalastyle:ignore
+
+  @Param(Array("2", "4", "8"))
+  var numInputs: Int = _
+
+  var inputs: Array[Array[(Int, BenchmarkRecord)]] = _
+
+  @Setup
+  def setup(): Unit = {
+    inputs = Array.tabulate(numInputs) { i =>
+      BenchmarkRecord.generateGroups(NumRecords / GroupSize, GroupSize)
+        .map(record => (record.key.get, record))
+        .filter(_._1 % numInputs != i)
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def groupByKey(bh: Blackhole): Unit = {
+    val grouped = inputs(0).iterator.groupByKey()
+    while (grouped.hasNext) {
+      val (key, group) = grouped.next()
+      bh.consume(key)
+      while (group.hasNext) {
+        bh.consume(group.next())
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def merge(bh: Blackhole): Unit = {
+    val merged = Iterators.merge(inputs.map(_.iterator))
+    while (merged.hasNext) {
+      bh.consume(merged.next())
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NumRecords)
+  def cogroup(bh: Blackhole): Unit = {
+    val cogrouped = Iterators.cogroup(inputs.map(_.iterator))
+    while (cogrouped.hasNext) {
+      val (key, groups) = cogrouped.next()
+      bh.consume(key)
+      var i = 0
+      while (i < groups.size) {
+        val group = groups(i)
+        while (group.hasNext) {
+          bh.consume(group.next())
+        }
+        i += 1
+      }
+    }
+  }
+}
+
+object IteratorsBenchmark {
+
+  final val NumRecords = 4096
+
+  final val GroupSize = 4
+}
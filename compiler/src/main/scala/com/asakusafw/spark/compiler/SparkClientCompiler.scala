@@ -127,6 +127,7 @@ object SparkClientCompiler {
     val SparkPlanVerify = "spark.plan.verify"
     val SparkInputDirect = "spark.input.direct"
     val SparkOutputDirect = "spark.output.direct"
+    val SparkShuffleKeyNormalized = "spark.shuffle.key.normalized"
   }
 
   trait Context
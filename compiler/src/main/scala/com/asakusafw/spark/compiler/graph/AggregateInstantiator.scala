@@ -64,7 +64,8 @@ object AggregateInstantiator extends Instantiator {
       option(
         sortOrdering(
           input.dataModelRef.groupingTypes(input.getGroup.getGrouping),
-          input.dataModelRef.orderingTypes(input.getGroup.getOrdering))),
+          input.dataModelRef.orderingTypes(input.getGroup.getOrdering),
+          context.options.useNormalizedShuffleKey)),
       (if (input.getGroup.getGrouping.isEmpty) {
         partitioner(ldc(1))
       } else {
@@ -76,10 +76,11 @@ object CoGroupInstantiator extends Instantiator {
               option(
                 sortOrdering(
                   input.dataModelRef.groupingTypes(input.getGroup.getGrouping),
-                  input.dataModelRef.orderingTypes(input.getGroup.getOrdering))))
+                  input.dataModelRef.orderingTypes(input.getGroup.getOrdering),
+                  context.options.useNormalizedShuffleKey)))
         }
       },
-      groupingOrdering(properties.head),
+      groupingOrdering(properties.head, context.options.useNormalizedShuffleKey),
       if (properties.head.isEmpty) {
         partitioner(ldc(1))
       } else {
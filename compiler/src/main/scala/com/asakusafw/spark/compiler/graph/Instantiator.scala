@@ -18,6 +18,7 @@ package graph
 
 import org.objectweb.asm.Type
 
+import com.asakusafw.lang.compiler.api.CompilerOptions
 import com.asakusafw.lang.compiler.planning.SubPlan
 import com.asakusafw.spark.tools.asm._
 import com.asakusafw.spark.tools.asm.MethodBuilder._
@@ -40,6 +41,8 @@ object Instantiator {
     with ClassLoaderProvider
     with DataModelLoaderProvider {
 
+    def options: CompilerOptions
+
     def branchKeys: BranchKeys
   }
 
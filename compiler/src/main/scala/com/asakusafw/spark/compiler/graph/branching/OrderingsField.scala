@@ -22,6 +22,7 @@ import scala.collection.JavaConversions._
 import org.objectweb.asm.Opcodes
 import org.objectweb.asm.signature.SignatureVisitor
 
+import com.asakusafw.lang.compiler.api.CompilerOptions
 import com.asakusafw.lang.compiler.planning.SubPlan
 import com.asakusafw.spark.compiler.planning.{ BroadcastInfo, SubPlanOutputInfo }
 import com.asakusafw.spark.compiler.util.SparkIdioms._
@@ -87,11 +88,12 @@ trait OrderingsField extends ClassBuilder {
       for {
         output <- subplanOutputs.sortBy(_.getOperator.getSerialNumber)
         outputInfo <- Option(output.getAttribute(classOf[SubPlanOutputInfo]))
-        partitionInfo <- outputInfo.getOutputType match {
+        (partitionInfo, normalized) <- outputInfo.getOutputType match {
           case SubPlanOutputInfo.OutputType.AGGREGATED | SubPlanOutputInfo.OutputType.PARTITIONED =>
-            Option(outputInfo.getPartitionInfo)
+            Option(outputInfo.getPartitionInfo).map((_, context.options.useNormalizedShuffleKey))
           case SubPlanOutputInfo.OutputType.BROADCAST =>
             Option(output.getAttribute(classOf[BroadcastInfo])).map(_.getFormatInfo)
+              .map((_, false))
           case _ => None
         }
       } {
@@ -100,7 +102,8 @@ trait OrderingsField extends ClassBuilder {
           context.branchKeys.getField(output.getOperator),
           sortOrdering(
             dataModelRef.groupingTypes(partitionInfo.getGrouping),
-            dataModelRef.orderingTypes(partitionInfo.getOrdering)))
+            dataModelRef.orderingTypes(partitionInfo.getOrdering),
+            normalized))
       }
     }
   }
@@ -112,6 +115,8 @@ object OrderingsField {
     extends CompilerContext
     with DataModelLoaderProvider {
 
+    def options: CompilerOptions
+
     def branchKeys: BranchKeys
   }
 }
@@ -21,11 +21,13 @@ import scala.collection.JavaConversions._
 
 import org.objectweb.asm.Type
 
+import com.asakusafw.lang.compiler.api.CompilerOptions
 import com.asakusafw.lang.compiler.api.reference.DataModelReference
 import com.asakusafw.lang.compiler.model.graph.Group
 import com.asakusafw.lang.compiler.planning.SubPlan
 import com.asakusafw.spark.compiler.planning.{ BroadcastInfo, SubPlanOutputInfo }
-import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.compiler.util.NormalizedKeys
+import com.asakusafw.spark.runtime.io.{ NormalizedKeySerDe, WritableSerDe }
 import com.asakusafw.spark.runtime.rdd.{ BranchKey, ShuffleKey }
 import com.asakusafw.spark.tools.asm._
 import com.asakusafw.spark.tools.asm.MethodBuilder._
@@ -47,12 +49,14 @@ trait PreparingKey extends ClassBuilder {
         for {
           (output, i) <- subplanOutputs.sortBy(_.getOperator.getSerialNumber).zipWithIndex
           outputInfo <- Option(output.getAttribute(classOf[SubPlanOutputInfo]))
-          partitionInfo <- outputInfo.getOutputType match {
+          (partitionInfo, normalized) <- outputInfo.getOutputType match {
             case SubPlanOutputInfo.OutputType.AGGREGATED |
               SubPlanOutputInfo.OutputType.PARTITIONED =>
               Option(outputInfo.getPartitionInfo)
+                .map((_, context.options.useNormalizedShuffleKey))
             case SubPlanOutputInfo.OutputType.BROADCAST =>
               Option(output.getAttribute(classOf[BroadcastInfo])).map(_.getFormatInfo)
+                .map((_, false))
             case _ => None
           }
         } {
@@ -65,7 +69,7 @@ trait PreparingKey extends ClassBuilder {
             methodName,
             classOf[ShuffleKey].asType,
             Seq(dataModelType)) { implicit mb =>
-              defShuffleKey(dataModelRef, partitionInfo)
+              defShuffleKey(dataModelRef, partitionInfo, normalized)
             }
 
           branchVar.push().unlessNotEqual(context.branchKeys.getField(op)) {
@@ -82,14 +86,33 @@ trait PreparingKey extends ClassBuilder {
 
   private[this] def defShuffleKey(
     dataModelRef: DataModelReference,
-    partitionInfo: Group)(
+    partitionInfo: Group,
+    normalized: Boolean)(
       implicit mb: MethodBuilder): Unit = {
     val thisVar :: dataModelVar :: _ = mb.argVars
 
+    val groupingTypes = dataModelRef.groupingTypes(partitionInfo.getGrouping)
+    val orderingTypes = dataModelRef.orderingTypes(partitionInfo.getOrdering)
+
     val shuffleKey = pushNew(classOf[ShuffleKey].asType)
     shuffleKey.dup().invokeInit(
       if (partitionInfo.getGrouping.isEmpty) {
         buildArray(Type.BYTE_TYPE)(_ => ())
+      } else if (NormalizedKeys.isGroupingNormalized(normalized, groupingTypes)) {
+        pushObject(NormalizedKeySerDe)
+          .invokeV(
+            "serialize",
+            classOf[Array[Byte]].asType,
+            buildSeq { builder =>
+              for {
+                propertyName <- partitionInfo.getGrouping
+                property = dataModelRef.findProperty(propertyName)
+              } {
+                builder +=
+                  dataModelVar.push().invokeV(
+                    property.getDeclaration.getName, property.getType.asType)
+              }
+            })
       } else {
         pushObject(WritableSerDe)
           .invokeV(
@@ -108,6 +131,22 @@ trait PreparingKey extends ClassBuilder {
       },
       if (partitionInfo.getOrdering.isEmpty) {
         buildArray(Type.BYTE_TYPE)(_ => ())
+      } else if (NormalizedKeys.isOrderingNormalized(normalized, groupingTypes, orderingTypes)) {
+        pushObject(NormalizedKeySerDe)
+          .invokeV(
+            "serialize",
+            classOf[Array[Byte]].asType,
+            buildSeq { builder =>
+              for {
+                propertyName <- partitionInfo.getOrdering.map(_.getPropertyName)
+                property = dataModelRef.findProperty(propertyName)
+              } {
+                builder +=
+                  dataModelVar.push().invokeV(
+                    property.getDeclaration.getName, property.getType.asType)
+              }
+            },
+            ldc(NormalizedKeys.descendings(orderingTypes)))
       } else {
         pushObject(WritableSerDe)
           .invokeV(
@@ -133,6 +172,8 @@ object PreparingKey {
   trait Context
     extends DataModelLoaderProvider {
 
+    def options: CompilerOptions
+
     def branchKeys: BranchKeys
   }
 }
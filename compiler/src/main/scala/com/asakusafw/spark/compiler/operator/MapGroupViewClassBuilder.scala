@@ -24,7 +24,7 @@ import org.objectweb.asm.{ Opcodes, Type }
 import org.objectweb.asm.signature.SignatureVisitor
 
 import com.asakusafw.spark.compiler.operator.MapGroupViewClassBuilder._
-import com.asakusafw.spark.runtime.fragment.MapGroupView
+import com.asakusafw.spark.runtime.fragment.HashGroupView
 import com.asakusafw.spark.runtime.io.WritableSerDe
 import com.asakusafw.spark.runtime.rdd.ShuffleKey
 import com.asakusafw.spark.tools.asm._
@@ -40,12 +40,11 @@ class MapGroupViewClassBuilder(
     new ClassSignatureBuilder()
       .newFormalTypeParameter("V", classOf[AnyRef].asType)
       .newSuperclass {
-        _.newClassType(classOf[MapGroupView[_, _]].asType) {
-          _.newTypeArgument(SignatureVisitor.INSTANCEOF, classOf[ShuffleKey].asType)
-            .newTypeArgument(SignatureVisitor.INSTANCEOF, "V")
+        _.newClassType(classOf[HashGroupView[_]].asType) {
+          _.newTypeArgument(SignatureVisitor.INSTANCEOF, "V")
         }
       },
-    classOf[MapGroupView[_, _]].asType) {
+    classOf[HashGroupView[_]].asType) {
 
   override def defConstructors(ctorDef: ConstructorDef): Unit = {
     ctorDef.newInit(
@@ -23,10 +23,10 @@ import org.objectweb.asm.Type
 import org.objectweb.asm.signature.SignatureVisitor
 import com.asakusafw.lang.compiler.analyzer.util.{ PropertyFolding, SummarizedModelUtil }
 import com.asakusafw.lang.compiler.model.graph.UserOperator
-import com.asakusafw.runtime.value.ValueOption
+import com.asakusafw.runtime.value._
 import com.asakusafw.spark.compiler.spi.AggregationCompiler
 import com.asakusafw.spark.runtime.graph.BroadcastId
-import com.asakusafw.spark.runtime.util.ValueOptionOps
+import com.asakusafw.spark.runtime.util.{ ColumnOps, ValueOptionOps }
 import com.asakusafw.spark.tools.asm._
 import com.asakusafw.spark.tools.asm.MethodBuilder._
 import com.asakusafw.spark.tools.asm4s._
@@ -62,9 +62,38 @@ private class SummarizeAggregationClassBuilder(
     operator.outputs(Summarize.ID_OUTPUT).dataModelType)(
     AggregationClassBuilder.AggregationType.Summarize) {
 
+  import SummarizeAggregationClassBuilder._ // scalastyle:ignore
+
   val propertyFoldings =
     SummarizedModelUtil.getPropertyFoldings(context.classLoader, operator).toSeq
 
+  val columnFoldings: Seq[PropertyFolding] = {
+    val aggregated = propertyFoldings.filter(_.getAggregation != PropertyFolding.Aggregation.ANY)
+    if (aggregated.forall(isColumnar)) aggregated else Seq.empty
+  }
+
+  private[this] def isColumnar(folding: PropertyFolding): Boolean = {
+    val sourceType = valuePropertyRef(folding).getType.asType
+    val destinationType = combinerPropertyRef(folding).getType.asType
+    folding.getAggregation match {
+      case PropertyFolding.Aggregation.SUM =>
+        ColumnValueTypes(sourceType) && SumColumnTypes(destinationType)
+      case PropertyFolding.Aggregation.COUNT =>
+        SumColumnTypes(destinationType)
+      case PropertyFolding.Aggregation.MAX | PropertyFolding.Aggregation.MIN =>
+        ColumnValueTypes(sourceType) && destinationType == sourceType
+      case _ => false
+    }
+  }
+
+  private[this] def valuePropertyRef(folding: PropertyFolding) =
+    operator.inputs(Summarize.ID_INPUT)
+      .dataModelRef.findProperty(folding.getMapping.getSourceProperty)
+
+  private[this] def combinerPropertyRef(folding: PropertyFolding) =
+    operator.outputs(Summarize.ID_OUTPUT)
+      .dataModelRef.findProperty(folding.getMapping.getDestinationProperty)
+
   override def defConstructors(ctorDef: ConstructorDef): Unit = {
     ctorDef.newInit(
       Seq(classOf[Map[BroadcastId, Broadcasted[_]]].asType),
@@ -85,6 +114,173 @@ private class SummarizeAggregationClassBuilder(
       }
   }
 
+  override def defMethods(methodDef: MethodDef): Unit = {
+    super.defMethods(methodDef)
+
+    methodDef.newMethod("inPlace", Type.BOOLEAN_TYPE, Seq.empty) { implicit mb =>
+      `return`(ldc(true))
+    }
+
+    if (columnFoldings.nonEmpty) {
+      defColumnMethods(methodDef)
+    }
+  }
+
+  private[this] def defColumnMethods(methodDef: MethodDef): Unit = {
+    methodDef.newMethod("numColumns", Type.INT_TYPE, Seq.empty) { implicit mb =>
+      `return`(ldc(columnFoldings.size))
+    }
+
+    methodDef.newMethod("retainsCombiner", Type.BOOLEAN_TYPE, Seq.empty) { implicit mb =>
+      `return`(ldc(propertyFoldings.size != columnFoldings.size))
+    }
+
+    for {
+      (name, argType) <- Seq(
+        "initColumnsByValue" -> valueType,
+        "mergeColumnsByValue" -> valueType,
+        "initColumnsByCombiner" -> combinerType,
+        "mergeColumnsByCombiner" -> combinerType)
+    } {
+      methodDef.newMethod(
+        name,
+        Seq(classOf[Array[Long]].asType, Type.INT_TYPE, classOf[AnyRef].asType)) { implicit mb =>
+          val thisVar :: columnsVar :: offsetVar :: argVar :: _ = mb.argVars
+          thisVar.push().invokeV(
+            name, columnsVar.push(), offsetVar.push(), argVar.push().cast(argType))
+          `return`()
+        }
+    }
+
+    methodDef.newMethod(
+      "initColumnsByValue",
+      Seq(classOf[Array[Long]].asType, Type.INT_TYPE, valueType)) { implicit mb =>
+        val thisVar :: columnsVar :: offsetVar :: valueVar :: _ = mb.argVars
+        columnFoldings.zipWithIndex.foreach {
+          case (folding, i) =>
+            folding.getAggregation match {
+              case PropertyFolding.Aggregation.MAX | PropertyFolding.Aggregation.MIN =>
+                pushObject(ColumnOps)
+                  .invokeV("copyWithName",
+                    columnsVar.push(), offsetVar.push().add(ldc(i)),
+                    valueProperty(folding, valueVar),
+                    ldc(getOperandName(folding)),
+                    valueVar.push().asType(classOf[AnyRef].asType))
+
+              case _ =>
+                pushObject(ColumnOps)
+                  .invokeV("setZero", columnsVar.push(), offsetVar.push().add(ldc(i)))
+                generateMergeColumnStatement(folding, columnsVar, offsetVar, i, valueVar)
+            }
+        }
+        `return`()
+      }
+
+    methodDef.newMethod(
+      "mergeColumnsByValue",
+      Seq(classOf[Array[Long]].asType, Type.INT_TYPE, valueType)) { implicit mb =>
+        val thisVar :: columnsVar :: offsetVar :: valueVar :: _ = mb.argVars
+        columnFoldings.zipWithIndex.foreach {
+          case (folding, i) =>
+            generateMergeColumnStatement(folding, columnsVar, offsetVar, i, valueVar)
+        }
+        `return`()
+      }
+
+    methodDef.newMethod(
+      "initColumnsByCombiner",
+      Seq(classOf[Array[Long]].asType, Type.INT_TYPE, combinerType)) { implicit mb =>
+        val thisVar :: columnsVar :: offsetVar :: combinerVar :: _ = mb.argVars
+        columnFoldings.zipWithIndex.foreach {
+          case (folding, i) =>
+            pushObject(ColumnOps)
+              .invokeV("copyUnsafe",
+                columnsVar.push(), offsetVar.push().add(ldc(i)),
+                combinerProperty(folding, combinerVar))
+        }
+        `return`()
+      }
+
+    methodDef.newMethod(
+      "mergeColumnsByCombiner",
+      Seq(classOf[Array[Long]].asType, Type.INT_TYPE, combinerType)) { implicit mb =>
+        val thisVar :: columnsVar :: offsetVar :: combinerVar :: _ = mb.argVars
+        columnFoldings.zipWithIndex.foreach {
+          case (folding, i) =>
+            val method = folding.getAggregation match {
+              case PropertyFolding.Aggregation.MAX => "maxUnsafe"
+              case PropertyFolding.Aggregation.MIN => "minUnsafe"
+              case _ => "addUnsafe"
+            }
+            pushObject(ColumnOps)
+              .invokeV(method,
+                columnsVar.push(), offsetVar.push().add(ldc(i)),
+                combinerProperty(folding, combinerVar))
+        }
+        `return`()
+      }
+
+    methodDef.newMethod(
+      "writeColumns",
+      classOf[AnyRef].asType,
+      Seq(classOf[Array[Long]].asType, Type.INT_TYPE, classOf[AnyRef].asType)) { implicit mb =>
+        val thisVar :: columnsVar :: offsetVar :: combinerVar :: _ = mb.argVars
+        `return`(
+          thisVar.push().invokeV("writeColumns", combinerType,
+            columnsVar.push(), offsetVar.push(), combinerVar.push().cast(combinerType)))
+      }
+
+    methodDef.newMethod(
+      "writeColumns",
+      combinerType,
+      Seq(classOf[Array[Long]].asType, Type.INT_TYPE, combinerType)) { implicit mb =>
+        val thisVar :: columnsVar :: offsetVar :: combinerVar :: _ = mb.argVars
+        columnFoldings.zipWithIndex.foreach {
+          case (folding, i) =>
+            pushObject(ColumnOps)
+              .invokeV("copyTo",
+                columnsVar.push(), offsetVar.push().add(ldc(i)),
+                combinerProperty(folding, combinerVar))
+        }
+        `return`(combinerVar.push())
+      }
+  }
+
+  private[this] def generateMergeColumnStatement(
+    folding: PropertyFolding, columnsVar: Var, offsetVar: Var, i: Int, valueVar: Var)(
+      implicit mb: MethodBuilder): Unit = {
+    folding.getAggregation match {
+      case PropertyFolding.Aggregation.COUNT =>
+        pushObject(ColumnOps)
+          .invokeV("inc", columnsVar.push(), offsetVar.push().add(ldc(i)))
+
+      case aggregation =>
+        val method = aggregation match {
+          case PropertyFolding.Aggregation.MAX => "maxWithName"
+          case PropertyFolding.Aggregation.MIN => "minWithName"
+          case _ => "addWithName"
+        }
+        pushObject(ColumnOps)
+          .invokeV(method,
+            columnsVar.push(), offsetVar.push().add(ldc(i)),
+            valueProperty(folding, valueVar),
+            ldc(getOperandName(folding)),
+            valueVar.push().asType(classOf[AnyRef].asType))
+    }
+  }
+
+  private[this] def valueProperty(
+    folding: PropertyFolding, valueVar: Var)(implicit mb: MethodBuilder): Stack = {
+    val property = valuePropertyRef(folding)
+    valueVar.push().invokeV(property.getDeclaration.getName, property.getType.asType)
+  }
+
+  private[this] def combinerProperty(
+    folding: PropertyFolding, combinerVar: Var)(implicit mb: MethodBuilder): Stack = {
+    val property = combinerPropertyRef(folding)
+    combinerVar.push().invokeV(property.getDeclaration.getName, property.getType.asType)
+  }
+
   override def defNewCombiner()(implicit mb: MethodBuilder): Unit = {
     `return`(pushNew0(combinerType))
   }
@@ -278,3 +474,18 @@ private class SummarizeAggregationClassBuilder(
     `return`(comb1Var.push())
   }
 }
+
+private object SummarizeAggregationClassBuilder {
+
+  val ColumnValueTypes: Set[Type] = Set(
+    classOf[ByteOption].asType,
+    classOf[ShortOption].asType,
+    classOf[IntOption].asType,
+    classOf[LongOption].asType,
+    classOf[FloatOption].asType,
+    classOf[DoubleOption].asType)
+
+  val SumColumnTypes: Set[Type] = Set(
+    classOf[LongOption].asType,
+    classOf[DoubleOption].asType)
+}
@@ -31,10 +31,11 @@ import org.objectweb.asm.signature.SignatureVisitor
 import com.asakusafw.lang.compiler.analyzer.util.GroupOperatorUtil
 import com.asakusafw.lang.compiler.model.graph.{ OperatorInput, UserOperator }
 import com.asakusafw.runtime.core.Result
-import com.asakusafw.runtime.flow.{ ArrayListBuffer, FileMapListBuffer, ListBuffer }
+import com.asakusafw.runtime.flow.{ ArrayListBuffer, ListBuffer }
 import com.asakusafw.runtime.core.GroupView
 import com.asakusafw.runtime.model.DataModel
 import com.asakusafw.spark.compiler.spi.{ OperatorCompiler, OperatorType }
+import com.asakusafw.spark.runtime.fragment.SpillableListBuffer
 import com.asakusafw.spark.runtime.fragment.user._
 import com.asakusafw.spark.tools.asm._
 import com.asakusafw.spark.tools.asm.MethodBuilder._
@@ -224,7 +225,7 @@ private class ListLikeBufferClassBuilder(
         superType,
         pushNew0(
           if (spill) {
-            classOf[FileMapListBuffer[_]].asType
+            classOf[SpillableListBuffer[_]].asType
           } else {
             classOf[ArrayListBuffer[_]].asType
           }).asType(classOf[ListBuffer[_]].asType))
@@ -18,6 +18,8 @@ package operator
 package user
 package join
 
+import java.io.DataOutput
+
 import scala.collection.JavaConversions._
 
 import org.apache.spark.broadcast.{ Broadcast => Broadcasted }
@@ -75,6 +77,35 @@ trait BroadcastJoin
           })
       }
 
+    methodDef.newMethod(
+      Opcodes.ACC_PROTECTED,
+      "writeKeyElements",
+      Seq(classOf[DataModel[_]].asType, classOf[DataOutput].asType)) { implicit mb =>
+        val thisVar :: txVar :: outVar :: _ = mb.argVars
+        thisVar.push().invokeV("writeKeyElements", txVar.push().cast(txType), outVar.push())
+        `return`()
+      }
+
+    methodDef.newMethod(
+      Opcodes.ACC_PROTECTED,
+      "writeKeyElements",
+      Seq(txType, classOf[DataOutput].asType)) { implicit mb =>
+        val thisVar :: txVar :: outVar :: _ = mb.argVars
+
+        val dataModelRef = txInput.dataModelRef
+        val group = txInput.getGroup
+
+        for {
+          propertyName <- group.getGrouping
+          property = dataModelRef.findProperty(propertyName)
+        } {
+          txVar.push()
+            .invokeV(property.getDeclaration.getName, property.getType.asType)
+            .invokeV("write", outVar.push())
+        }
+        `return`()
+      }
+
     methodDef.newMethod(
       Opcodes.ACC_PROTECTED,
       "masters",
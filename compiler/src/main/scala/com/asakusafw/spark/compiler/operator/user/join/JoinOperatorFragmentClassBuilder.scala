@@ -50,6 +50,8 @@ abstract class JoinOperatorFragmentClassBuilder(
   val masterType: Type = masterInput.dataModelType
   val txType: Type = txInput.dataModelType
 
+  val selectionMethod: Option[(String, Type)] = operator.selectionMethod
+
   override def defMethods(methodDef: MethodDef): Unit = {
     super.defMethods(methodDef)
 
@@ -100,7 +102,7 @@ abstract class JoinOperatorFragmentClassBuilder(
         .newReturnType(masterType)) { implicit mb =>
         val thisVar :: mastersVar :: txVar :: _ = mb.argVars
         `return`(
-          operator.selectionMethod match {
+          selectionMethod match {
             case Some((name, t)) =>
               getOperatorField()
                 .invokeV(
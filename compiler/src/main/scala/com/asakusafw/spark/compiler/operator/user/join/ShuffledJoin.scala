@@ -15,6 +15,8 @@
  */
 package com.asakusafw.spark.compiler.operator.user.join
 
+import org.objectweb.asm.Type
+
 import com.asakusafw.runtime.model.DataModel
 import com.asakusafw.spark.tools.asm._
 import com.asakusafw.spark.tools.asm.MethodBuilder._
@@ -26,6 +28,10 @@ trait ShuffledJoin
   override def defMethods(methodDef: MethodDef): Unit = {
     super.defMethods(methodDef)
 
+    methodDef.newMethod("firstMasterOnly", Type.BOOLEAN_TYPE, Seq.empty) { implicit mb =>
+      `return`(ldc(selectionMethod.isEmpty))
+    }
+
     methodDef.newMethod(
       "newMasterDataModel",
       classOf[DataModel[_]].asType,
@@ -94,6 +94,10 @@ package object compiler {
     def useOutputDirect: Boolean = {
       JBoolean.parseBoolean(options.get(SparkOutputDirect, true.toString))
     }
+
+    def useNormalizedShuffleKey: Boolean = {
+      JBoolean.parseBoolean(options.get(SparkShuffleKeyNormalized, false.toString))
+    }
   }
 
   implicit class AugmentedOperator(val operator: Operator) extends AnyVal {
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.compiler
+package util
+
+import org.objectweb.asm.Type
+
+import com.asakusafw.runtime.value._
+import com.asakusafw.spark.runtime.io.NormalizedKeySerDe
+import com.asakusafw.spark.tools.asm._
+
+object NormalizedKeys {
+
+  private[this] val SupportedTypes: Set[Type] = Set(
+    classOf[BooleanOption],
+    classOf[ByteOption],
+    classOf[ShortOption],
+    classOf[IntOption],
+    classOf[LongOption],
+    classOf[FloatOption],
+    classOf[DoubleOption],
+    classOf[DateOption],
+    classOf[DateTimeOption],
+    classOf[StringOption]).map(_.asType)
+
+  def isGroupingNormalized(
+    normalized: Boolean,
+    groupingTypes: Seq[Type]): Boolean = {
+    normalized && groupingTypes.forall(SupportedTypes)
+  }
+
+  def isOrderingNormalized(
+    normalized: Boolean,
+    groupingTypes: Seq[Type],
+    orderingTypes: Seq[(Type, Boolean)]): Boolean = {
+    isGroupingNormalized(normalized, groupingTypes) &&
+      orderingTypes.size <= NormalizedKeySerDe.MaxOrderingProperties &&
+      orderingTypes.forall { case (t, _) => SupportedTypes(t) }
+  }
+
+  def descendings(orderingTypes: Seq[(Type, Boolean)]): Long = {
+    orderingTypes.zipWithIndex.foldLeft(0L) {
+      case (mask, ((_, asc), i)) =>
+        if (asc) mask else mask | (1L << i)
+    }
+  }
+}
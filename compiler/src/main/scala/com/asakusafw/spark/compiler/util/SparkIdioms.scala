@@ -23,6 +23,10 @@ import com.asakusafw.spark.compiler.ordering.{
   GroupingOrderingClassBuilder,
   SortOrderingClassBuilder
 }
+import com.asakusafw.spark.runtime.orderings.{
+  NormalizedGroupingOrdering,
+  NormalizedSortOrdering
+}
 import com.asakusafw.spark.runtime.rdd.ShuffleKey
 import com.asakusafw.spark.tools.asm._
 import com.asakusafw.spark.tools.asm.MethodBuilder._
@@ -55,4 +59,41 @@ object SparkIdioms {
     pushNew0(SortOrderingClassBuilder.getOrCompile(groupingTypes, orderingTypes))
       .asType(classOf[Ordering[ShuffleKey]].asType)
   }
+
+  def groupingOrdering(
+    groupingTypes: Seq[Type],
+    normalized: Boolean)(
+      implicit mb: MethodBuilder,
+      context: CompilerContext): Stack = {
+    if (NormalizedKeys.isGroupingNormalized(normalized, groupingTypes)) {
+      pushNew0(classOf[NormalizedGroupingOrdering].asType)
+        .asType(classOf[Ordering[ShuffleKey]].asType)
+    } else {
+      groupingOrdering(groupingTypes)
+    }
+  }
+
+  def sortOrdering(
+    groupingTypes: Seq[Type],
+    orderingTypes: Seq[(Type, Boolean)],
+    normalized: Boolean)(
+      implicit mb: MethodBuilder,
+      context: CompilerContext): Stack = {
+    if (NormalizedKeys.isOrderingNormalized(normalized, groupingTypes, orderingTypes)) {
+      pushNew0(
+        if (orderingTypes.isEmpty) {
+          classOf[NormalizedGroupingOrdering].asType
+        } else {
+          classOf[NormalizedSortOrdering].asType
+        })
+        .asType(classOf[Ordering[ShuffleKey]].asType)
+    } else if (NormalizedKeys.isGroupingNormalized(normalized, groupingTypes)) {
+      pushNew0(
+        SortOrderingClassBuilder.getOrCompile(
+          classOf[NormalizedGroupingOrdering].asType, orderingTypes))
+        .asType(classOf[Ordering[ShuffleKey]].asType)
+    } else {
+      sortOrdering(groupingTypes, orderingTypes)
+    }
+  }
 }
@@ -720,6 +720,121 @@ class JobCompilerSpecBase(threshold: Option[Int], parallelism: Option[Int])
     }
   }
 
+  it should s"compile Job with CoGroup with normalized shuffle keys: ${configuration}" in {
+    val path = createTempDirectoryForEach("test-").toFile
+
+    prepareData("foo1", path) {
+      sc.parallelize(0 until 5).map(Foo.intToFoo)
+    }
+    prepareData("foo2", path) {
+      sc.parallelize(5 until 10).map(Foo.intToFoo)
+    }
+    prepareData("bar", path) {
+      sc.parallelize(0 until 10).flatMap(Bar.intToBars)
+    }
+
+    val foo1InputOperator = ExternalInput
+      .newInstance("foo1/part-*",
+        new ExternalInputInfo.Basic(
+          ClassDescription.of(classOf[Foo]),
+          "foos1",
+          ClassDescription.of(classOf[Foo]),
+          ExternalInputInfo.DataSize.UNKNOWN))
+
+    val foo2InputOperator = ExternalInput
+      .newInstance("foo2/part-*",
+        new ExternalInputInfo.Basic(
+          ClassDescription.of(classOf[Foo]),
+          "foos2",
+          ClassDescription.of(classOf[Foo]),
+          ExternalInputInfo.DataSize.UNKNOWN))
+
+    val barInputOperator = ExternalInput
+      .newInstance("bar/part-*",
+        new ExternalInputInfo.Basic(
+          ClassDescription.of(classOf[Bar]),
+          "bars",
+          ClassDescription.of(classOf[Bar]),
+          ExternalInputInfo.DataSize.UNKNOWN))
+
+    val cogroupOperator = OperatorExtractor
+      .extract(classOf[CoGroup], classOf[Ops], "cogroup")
+      .input("foos", ClassDescription.of(classOf[Foo]),
+        Groups.parse(Seq("id")),
+        foo1InputOperator.getOperatorPort, foo2InputOperator.getOperatorPort)
+      .input("bars", ClassDescription.of(classOf[Bar]),
+        Groups.parse(Seq("fooId"), Seq("+id")),
+        barInputOperator.getOperatorPort)
+      .output("fooResult", ClassDescription.of(classOf[Foo]))
+      .output("barResult", ClassDescription.of(classOf[Bar]))
+      .output("fooError", ClassDescription.of(classOf[Foo]))
+      .output("barError", ClassDescription.of(classOf[Bar]))
+      .build()
+
+    val fooResultOutputOperator = ExternalOutput
+      .newInstance("fooResult", cogroupOperator.findOutput("fooResult"))
+
+    val barResultOutputOperator = ExternalOutput
+      .newInstance("barResult", cogroupOperator.findOutput("barResult"))
+
+    val fooErrorOutputOperator = ExternalOutput
+      .newInstance("fooError", cogroupOperator.findOutput("fooError"))
+
+    val barErrorOutputOperator = ExternalOutput
+      .newInstance("barError", cogroupOperator.findOutput("barError"))
+
+    val graph = new OperatorGraph(Seq(
+      foo1InputOperator, foo2InputOperator, barInputOperator,
+      cogroupOperator,
+      fooResultOutputOperator, barResultOutputOperator, fooErrorOutputOperator, barErrorOutputOperator))
+
+    val jobType = compile(
+      flowId, graph, 8, path, classServer.root.toFile,
+      Map(SparkClientCompiler.Options.SparkShuffleKeyNormalized -> true.toString))
+    executeJob(flowId, jobType)
+
+    {
+      val fooResult = readResult[Foo]("fooResult", path)
+        .map { foo =>
+          (foo.id.get, foo.foo.getAsString)
+        }.collect.toSeq.sortBy(_._1)
+      assert(fooResult.size === 1)
+      assert(fooResult(0) === (1, "foo1"))
+    }
+    {
+      val barResult = readResult[Bar]("barResult", path)
+        .map { bar =>
+          (bar.id.get, bar.fooId.get, bar.bar.getAsString)
+        }.collect.toSeq.sortBy(_._1)
+      assert(barResult.size === 1)
+      assert(barResult(0) === (10, 1, "bar10"))
+    }
+    {
+      val fooError = readResult[Foo]("fooError", path)
+        .map { foo =>
+          (foo.id.get, foo.foo.getAsString)
+        }.collect.toSeq.sortBy(_._1)
+      assert(fooError.size === 9)
+      assert(fooError(0) === (0, "foo0"))
+      for (i <- 2 until 10) {
+        assert(fooError(i - 1) === (i, s"foo${i}"))
+      }
+    }
+    {
+      val barError = readResult[Bar]("barError", path)
+        .map { bar =>
+          (bar.id.get, bar.fooId.get, bar.bar.getAsString)
+        }.collect.toSeq.sortBy(bar => (bar._2, bar._1))
+      assert(barError.size === 44)
+      for {
+        i <- 2 until 10
+        j <- 0 until i
+      } {
+        assert(barError((i * (i - 1)) / 2 + j - 1) === (10 + j, i, s"bar${10 + j}"))
+      }
+    }
+  }
+
   it should s"compile Job with CoGroup with grouping is empty: ${configuration}" in {
     val path = createTempDirectoryForEach("test-").toFile
 
@@ -422,6 +422,70 @@ class SummarizeAggregationCompilerSpec extends FlatSpec with UsingCompilerContex
           },
             2500)))
   }
+
+  it should "compile columnar Aggregation for Summarize over primitive properties" in {
+    val operator = OperatorExtractor
+      .extract(classOf[Summarize], classOf[ColumnSummarizeOperator], "summarize")
+      .input("input", ClassDescription.of(classOf[ColumnValue]))
+      .output("output", ClassDescription.of(classOf[ColumnSummarizedValue]))
+      .build()
+
+    implicit val context = newAggregationCompilerContext("flowId")
+
+    val thisType = AggregationCompiler.compile(operator)
+    val cls = context.loadClass[Aggregation[Seq[_], ColumnValue, ColumnSummarizedValue]](
+      thisType.getClassName)
+
+    val aggregation = cls
+      .getConstructor(
+        classOf[Map[BroadcastId, Broadcasted[_]]])
+      .newInstance(Map.empty)
+    assert(aggregation.numColumns === 5)
+    assert(aggregation.retainsCombiner === true)
+
+    val valueCombiner = aggregation.valueCombiner()
+    valueCombiner.insertAll((0 until 100).map { i =>
+      val value = new ColumnValue()
+      value.key.modify(i % 2)
+      value.iOpt.modify(i)
+      value.jOpt.modify(i.toLong)
+      value.dOpt.modify(i.toDouble)
+      (Seq(i % 2), value)
+    }.iterator)
+
+    def summarize(summarized: ColumnSummarizedValue): (Int, Long, Long, Double, Double, Long) = {
+      (summarized.key.get,
+        summarized.iSum.get,
+        summarized.jMax.get,
+        summarized.dMin.get,
+        summarized.dSum.get,
+        summarized.count.get)
+    }
+
+    assert(valueCombiner.toSeq.map(kv => summarize(kv._2)).sortBy(_._1) ===
+      Seq(
+        (0, (0 until 100 by 2).sum.toLong, 98L, 0.0, (0 until 100 by 2).sum.toDouble, 50L),
+        (1, (1 until 100 by 2).sum.toLong, 99L, 1.0, (1 until 100 by 2).sum.toDouble, 50L)))
+
+    val combinerCombiner = aggregation.combinerCombiner()
+    combinerCombiner.insertAll((0 until 100).map { i =>
+      val value = new ColumnSummarizedValue()
+      value.key.modify(i % 2)
+      value.iSum.modify(i.toLong)
+      value.jMax.modify(i.toLong)
+      value.dMin.modify(i.toDouble)
+      value.dSum.modify(i.toDouble)
+      value.count.modify(i.toLong)
+      (Seq(i % 2), value)
+    }.iterator)
+
+    assert(combinerCombiner.toSeq.map(kv => summarize(kv._2)).sortBy(_._1) ===
+      Seq(
+        (0, (0 until 100 by 2).sum.toLong, 98L, 0.0, (0 until 100 by 2).sum.toDouble,
+          (0 until 100 by 2).sum.toLong),
+        (1, (1 until 100 by 2).sum.toLong, 99L, 1.0, (1 until 100 by 2).sum.toDouble,
+          (1 until 100 by 2).sum.toLong)))
+  }
 }
 
 object SummarizeAggregationCompilerSpec {
@@ -740,4 +804,82 @@ object SummarizeAggregationCompilerSpec {
     @Summarize
     def summarize(value: Value): SummarizedValue
   }
+
+  class ColumnValue extends DataModel[ColumnValue] {
+
+    val key = new IntOption()
+    val iOpt = new IntOption()
+    val jOpt = new LongOption()
+    val dOpt = new DoubleOption()
+
+    override def reset(): Unit = {
+      key.setNull()
+      iOpt.setNull()
+      jOpt.setNull()
+      dOpt.setNull()
+    }
+
+    override def copyFrom(other: ColumnValue): Unit = {
+      key.copyFrom(other.key)
+      iOpt.copyFrom(other.iOpt)
+      jOpt.copyFrom(other.jOpt)
+      dOpt.copyFrom(other.dOpt)
+    }
+
+    def getKeyOption = key
+    def getIOptOption = iOpt
+    def getJOptOption = jOpt
+    def getDOptOption = dOpt
+  }
+
+  @Summarized(term = new Summarized.Term(
+    source = classOf[ColumnValue],
+    shuffle = new Key(group = Array("key")),
+    foldings = Array(
+      new Summarized.Folding(source = "key", destination = "key", aggregator = Summarized.Aggregator.ANY),
+      new Summarized.Folding(source = "iOpt", destination = "iSum", aggregator = Summarized.Aggregator.SUM),
+      new Summarized.Folding(source = "jOpt", destination = "jMax", aggregator = Summarized.Aggregator.MAX),
+      new Summarized.Folding(source = "dOpt", destination = "dMin", aggregator = Summarized.Aggregator.MIN),
+      new Summarized.Folding(source = "dOpt", destination = "dSum", aggregator = Summarized.Aggregator.SUM),
+      new Summarized.Folding(source = "key", destination = "count", aggregator = Summarized.Aggregator.COUNT))))
+  class ColumnSummarizedValue extends DataModel[ColumnSummarizedValue] {
+
+    val key = new IntOption()
+    val iSum = new LongOption()
+    val jMax = new LongOption()
+    val dMin = new DoubleOption()
+    val dSum = new DoubleOption()
+    val count = new LongOption()
+
+    override def reset(): Unit = {
+      key.setNull()
+      iSum.setNull()
+      jMax.setNull()
+      dMin.setNull()
+      dSum.setNull()
+      count.setNull()
+    }
+
+    override def copyFrom(other: ColumnSummarizedValue): Unit = {
+      key.copyFrom(other.key)
+      iSum.copyFrom(other.iSum)
+      jMax.copyFrom(other.jMax)
+      dMin.copyFrom(other.dMin)
+      dSum.copyFrom(other.dSum)
+      count.copyFrom(other.count)
+    }
+
+    def getKeyOption = key
+    def getISumOption = iSum
+    def getJMaxOption = jMax
+    def getDMinOption = dMin
+    def getDSumOption = dSum
+    def getCountOption = count
+  }
+
+  abstract class ColumnSummarizeOperator {
+
+    @Summarize
+    def summarize(value: ColumnValue): ColumnSummarizedValue
+  }
 }
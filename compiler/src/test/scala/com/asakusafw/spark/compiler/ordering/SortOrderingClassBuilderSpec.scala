@@ -21,7 +21,8 @@ import org.scalatest.FlatSpec
 import org.scalatest.junit.JUnitRunner
 
 import com.asakusafw.runtime.value.{ IntOption, LongOption, StringOption }
-import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.io.{ NormalizedKeySerDe, WritableSerDe }
+import com.asakusafw.spark.runtime.orderings.NormalizedSortOrdering
 import com.asakusafw.spark.runtime.rdd.ShuffleKey
 import com.asakusafw.spark.tools.asm._
 
@@ -133,4 +134,40 @@ class SortOrderingClassBuilderSpec extends FlatSpec with UsingCompilerContext {
       assert(ordering.gt(x, y) === true)
     }
   }
+
+  it should "agree with normalized sort ordering" in {
+    implicit val context = newCompilerContext("flowId")
+
+    val thisType = SortOrderingClassBuilder.getOrCompile(
+      Seq(classOf[IntOption].asType),
+      Seq((classOf[LongOption].asType, true), (classOf[StringOption].asType, false)))
+    val cls = context.loadClass[Ordering[ShuffleKey]](thisType.getClassName)
+    val ordering = cls.newInstance()
+    val normalized = new NormalizedSortOrdering()
+
+    val values = for {
+      i <- Seq(None, Some(-1), Some(0), Some(1))
+      l <- Seq(None, Some(Long.MinValue), Some(0L), Some(1L))
+      s <- Seq(None, Some(""), Some("abc"), Some("abd"))
+    } yield {
+      (i.map(new IntOption(_)).getOrElse(new IntOption()),
+        l.map(new LongOption(_)).getOrElse(new LongOption()),
+        s.map(new StringOption(_)).getOrElse(new StringOption()))
+    }
+
+    for {
+      (xi, xl, xs) <- values
+      (yi, yl, ys) <- values
+    } {
+      val expected = math.signum(ordering.compare(
+        new ShuffleKey(WritableSerDe.serialize(Seq(xi)), WritableSerDe.serialize(Seq(xl, xs))),
+        new ShuffleKey(WritableSerDe.serialize(Seq(yi)), WritableSerDe.serialize(Seq(yl, ys)))))
+      val actual = math.signum(normalized.compare(
+        new ShuffleKey(
+          NormalizedKeySerDe.serialize(Seq(xi)), NormalizedKeySerDe.serialize(Seq(xl, xs), 2L)),
+        new ShuffleKey(
+          NormalizedKeySerDe.serialize(Seq(yi)), NormalizedKeySerDe.serialize(Seq(yl, ys), 2L))))
+      assert(actual === expected, s"(${xi}, ${xl}, ${xs}) and (${yi}, ${yl}, ${ys})")
+    }
+  }
 }
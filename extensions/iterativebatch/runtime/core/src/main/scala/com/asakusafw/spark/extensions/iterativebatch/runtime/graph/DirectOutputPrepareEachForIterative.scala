@@ -35,7 +35,7 @@ import com.asakusafw.runtime.value.{ StringOption, ValueOption }
 import com.asakusafw.spark.runtime.{ JobContext, RoundContext }
 import com.asakusafw.spark.runtime.directio._
 import com.asakusafw.spark.runtime.graph._
-import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.io.{ WritableSerDe, WritableValue }
 import com.asakusafw.spark.runtime.rdd._
 
 abstract class DirectOutputPrepareEachForIterative[T <: DataModel[T] with Writable: ClassTag](
@@ -77,7 +77,7 @@ abstract class DirectOutputPrepareEachForIterative[T <: DataModel[T] with Writab
           val rdd = doPrepare(rc, prev)
 
           val shuffleDep = rdd.dependencies.head
-            .asInstanceOf[ShuffleDependency[ShuffleKey, Array[Byte], Array[Byte]]]
+            .asInstanceOf[ShuffleDependency[ShuffleKey, AnyRef, AnyRef]]
 
           jobContext.sparkContext.submitMapStage(shuffleDep).map { _ =>
 
@@ -85,7 +85,7 @@ abstract class DirectOutputPrepareEachForIterative[T <: DataModel[T] with Writab
               val value = newDataModel()
               iter.map {
                 case (key, bytes) =>
-                  WritableSerDe.deserialize(bytes, value)
+                  WritableSerDe.deserialize(bytes.asInstanceOf[Array[Byte]], value)
                   (key, value)
               }
             }, preservesPartitioning = true)
@@ -96,7 +96,7 @@ abstract class DirectOutputPrepareEachForIterative[T <: DataModel[T] with Writab
 
   protected def doPrepare(
     rc: RoundContext, prev: RDD[T])(
-      implicit ec: ExecutionContext): ShuffledRDD[ShuffleKey, Array[Byte], Array[Byte]]
+      implicit ec: ExecutionContext): ShuffledRDD[ShuffleKey, AnyRef, AnyRef]
 
   def confluent(rdds: Seq[RDD[(ShuffleKey, T)]]): RDD[(ShuffleKey, T)]
 }
@@ -115,8 +115,9 @@ abstract class DirectOutputPrepareFlatEachForIterative[T <: DataModel[T] with Wr
 
   override protected def doPrepare(
     rc: RoundContext, prev: RDD[T])(
-      implicit ec: ExecutionContext): ShuffledRDD[ShuffleKey, Array[Byte], Array[Byte]] = {
+      implicit ec: ExecutionContext): ShuffledRDD[ShuffleKey, AnyRef, AnyRef] = {
 
+    val reuse = WritableValue.isEnabled(jobContext.sparkContext.getConf)
     val prepared = prev.mapPartitions { iter =>
       val conf = rc.hadoopConf.value
       val stageInfo = StageInfo.deserialize(conf.get(StageInfo.KEY_NAME))
@@ -139,13 +140,14 @@ abstract class DirectOutputPrepareFlatEachForIterative[T <: DataModel[T] with Wr
       val pathOpt = new StringOption()
       pathOpt.modify(resolvedPath)
       val shuffleKey = new ShuffleKey(WritableSerDe.serialize(Seq(basePathOpt, pathOpt)))
+      val serialize = WritableValue.serializer(reuse)
 
       iter.map { value =>
-        (shuffleKey, WritableSerDe.serialize(value))
+        (shuffleKey, serialize(value))
       }
     }
 
-    new ShuffledRDD[ShuffleKey, Array[Byte], Array[Byte]](
+    new ShuffledRDD[ShuffleKey, AnyRef, AnyRef](
       prepared, IdentityPartitioner(prepared.partitions.length))
   }
 
@@ -186,21 +188,23 @@ abstract class DirectOutputPrepareGroupEachForIterative[T <: DataModel[T] with W
 
   override protected def doPrepare(
     rc: RoundContext, prev: RDD[T])(
-      implicit ec: ExecutionContext): ShuffledRDD[ShuffleKey, Array[Byte], Array[Byte]] = {
+      implicit ec: ExecutionContext): ShuffledRDD[ShuffleKey, AnyRef, AnyRef] = {
 
+    val reuse = WritableValue.isEnabled(jobContext.sparkContext.getConf)
     prev.mapPartitions { iter =>
       val conf = rc.hadoopConf.value
       val stageInfo = StageInfo.deserialize(conf.get(StageInfo.KEY_NAME))
 
       val basePathOpt = new StringOption()
       basePathOpt.modify(stageInfo.resolveUserVariables(this.basePath))
+      val serialize = WritableValue.serializer(reuse)
 
       iter.map { value =>
-        (shuffleKey(basePathOpt, value)(stageInfo), WritableSerDe.serialize(value))
+        (shuffleKey(basePathOpt, value)(stageInfo), serialize(value))
       }
     }
       .repartitionAndSortWithinPartitions(partitioner)
-      .asInstanceOf[ShuffledRDD[ShuffleKey, Array[Byte], Array[Byte]]]
+      .asInstanceOf[ShuffledRDD[ShuffleKey, AnyRef, AnyRef]]
   }
 
   override def confluent(rdds: Seq[RDD[(ShuffleKey, T)]]): RDD[(ShuffleKey, T)] = {
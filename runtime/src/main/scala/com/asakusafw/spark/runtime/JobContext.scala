@@ -56,6 +56,21 @@ trait JobContext {
           sparkContext.longAccumulator(s"output.${counter.name}.${name}.bytes"),
           sparkContext.longAccumulator(s"output.${counter.name}.${name}.records")))
   }
+
+  @transient
+  val fragmentStatistics: mutable.Map[String, FragmentStatistics] = mutable.Map.empty
+
+  def getOrNewFragmentStatistics(name: String): FragmentStatistics = {
+    fragmentStatistics
+      .getOrElseUpdate(
+        name,
+        new FragmentStatistics(
+          sparkContext.longAccumulator(s"fragment.${name}.inMemory"),
+          sparkContext.longAccumulator(s"fragment.${name}.spilling"),
+          sparkContext.longAccumulator(s"fragment.${name}.fanout"),
+          sparkContext.longAccumulator(s"fragment.${name}.recordBytes"),
+          sparkContext.longAccumulator(s"fragment.${name}.window")))
+  }
 }
 
 object JobContext {
@@ -105,4 +120,39 @@ object JobContext {
     override def toString(): String =
       s"OutputStatistics(files=${files},bytes=${bytes},records=${records})"
   }
+
+  class FragmentStatistics private[JobContext] (
+    inMemoryCounter: LongAccumulator,
+    spillingCounter: LongAccumulator,
+    fanoutAccumulator: LongAccumulator,
+    recordBytesAccumulator: LongAccumulator,
+    windowAccumulator: LongAccumulator) extends Serializable {
+
+    def addInMemory(fanout: Long, recordBytes: Long): Unit = {
+      inMemoryCounter.add(1L)
+      fanoutAccumulator.add(fanout)
+      recordBytesAccumulator.add(recordBytes)
+    }
+
+    def addSpilling(fanout: Long, recordBytes: Long, window: Int): Unit = {
+      spillingCounter.add(1L)
+      fanoutAccumulator.add(fanout)
+      recordBytesAccumulator.add(recordBytes)
+      windowAccumulator.add(window.toLong)
+    }
+
+    def inMemory: Long = inMemoryCounter.value
+
+    def spilling: Long = spillingCounter.value
+
+    def fanout: Double = fanoutAccumulator.avg
+
+    def recordBytes: Double = recordBytesAccumulator.avg
+
+    def window: Double = windowAccumulator.avg
+
+    override def toString(): String =
+      s"FragmentStatistics(inMemory=${inMemory},spilling=${spilling}," +
+        s"fanout=${fanout},recordBytes=${recordBytes},window=${window})"
+  }
 }
@@ -15,11 +15,31 @@
  */
 package com.asakusafw.spark.runtime.aggregation
 
+import java.io.{
+  BufferedInputStream,
+  BufferedOutputStream,
+  File,
+  FileInputStream,
+  FileOutputStream
+}
+import java.util.Arrays
+
+import scala.collection.mutable
+
 import org.apache.spark.{ Aggregator, SparkEnv, TaskContext }
+import org.apache.spark.memory.{ MemoryConsumer, TaskMemoryManager }
+import org.apache.spark.serializer.DeserializationStream
+import org.apache.spark.storage.BlockId
+import org.apache.spark.util.{ SizeEstimator, TaskCompletionListener }
 import org.apache.spark.util.collection.{ AppendOnlyMap, ExternalAppendOnlyMap }
+import org.slf4j.LoggerFactory
 
+import org.apache.spark.backdoor._
 import org.apache.spark.executor.backdoor._
 
+import com.asakusafw.spark.runtime.Props
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
 abstract class Aggregation[K, V, C] extends Serializable {
 
   import Aggregation._ // scalastyle:ignore
@@ -34,11 +54,43 @@ abstract class Aggregation[K, V, C] extends Serializable {
 
   def mergeCombiners(comb1: C, comb2: C): C
 
+  def inPlace: Boolean = false
+
+  def numColumns: Int = 0
+
+  def retainsCombiner: Boolean = true
+
+  def initColumnsByValue(columns: Array[Long], offset: Int, value: V): Unit = {}
+
+  def mergeColumnsByValue(columns: Array[Long], offset: Int, value: V): Unit = {}
+
+  def initColumnsByCombiner(columns: Array[Long], offset: Int, combiner: C): Unit = {}
+
+  def mergeColumnsByCombiner(columns: Array[Long], offset: Int, combiner: C): Unit = {}
+
+  def writeColumns(columns: Array[Long], offset: Int, combiner: C): C = combiner
+
   lazy val isSpillEnabled =
     Option(SparkEnv.get).map(_.conf.getBoolean("spark.shuffle.spill", true)).getOrElse(false)
 
+  lazy val partialSampleSize =
+    Option(SparkEnv.get)
+      .map(_.conf.getInt(
+        Props.AggregationPartialSampleSize, Props.DefaultAggregationPartialSampleSize))
+      .getOrElse(Props.DefaultAggregationPartialSampleSize)
+
+  lazy val partialBypassRatio =
+    Option(SparkEnv.get)
+      .map(_.conf.getDouble(
+        Props.AggregationPartialBypassRatio, Props.DefaultAggregationPartialBypassRatio))
+      .getOrElse(Props.DefaultAggregationPartialBypassRatio)
+
   def valueCombiner(): Combiner[K, V, C] = {
-    if (!isSpillEnabled) {
+    if (inPlace) {
+      new InPlaceCombiner(
+        initCombinerByValue(newCombiner(), _), mergeValue _, mergeCombiners _, isSpillEnabled,
+        valueColumns)
+    } else if (!isSpillEnabled) {
       new InMemoryCombiner(
         initCombinerByValue(newCombiner(), _), mergeValue _, mergeCombiners _)
     } else {
@@ -47,8 +99,28 @@ abstract class Aggregation[K, V, C] extends Serializable {
     }
   }
 
+  def partialCombiner(): PartialCombiner[K, V, C] = {
+    new PartialCombiner(this, partialSampleSize, partialBypassRatio)
+  }
+
+  def sortedValueCombine(
+    iter: Iterator[Product2[K, V]], grouping: Ordering[K]): Iterator[(K, C)] = {
+    new SortedCombineIterator(
+      iter.buffered, grouping, initCombinerByValue(newCombiner(), _), mergeValue _)
+  }
+
+  def sortedCombinerCombine(
+    iter: Iterator[Product2[K, C]], grouping: Ordering[K]): Iterator[(K, C)] = {
+    new SortedCombineIterator(
+      iter.buffered, grouping, initCombinerByCombiner(newCombiner(), _), mergeCombiners _)
+  }
+
   def combinerCombiner(): Combiner[K, C, C] = {
-    if (!isSpillEnabled) {
+    if (inPlace) {
+      new InPlaceCombiner(
+        initCombinerByCombiner(newCombiner(), _), mergeCombiners _, mergeCombiners _,
+        isSpillEnabled, combinerColumns)
+    } else if (!isSpillEnabled) {
       new InMemoryCombiner(
         initCombinerByCombiner(newCombiner(), _), mergeCombiners _, mergeCombiners _)
     } else {
@@ -56,10 +128,77 @@ abstract class Aggregation[K, V, C] extends Serializable {
         initCombinerByCombiner(newCombiner(), _), mergeCombiners _, mergeCombiners _)
     }
   }
+
+  private def valueColumns: Option[Columns[V, C]] = {
+    if (numColumns > 0) {
+      Some(new Columns[V, C](numColumns, retainsCombiner) {
+
+        override def init(columns: Array[Long], offset: Int, value: V): Unit =
+          initColumnsByValue(columns, offset, value)
+
+        override def merge(columns: Array[Long], offset: Int, value: V): Unit =
+          mergeColumnsByValue(columns, offset, value)
+
+        override def newCombiner(): C = Aggregation.this.newCombiner()
+
+        override def write(columns: Array[Long], offset: Int, combiner: C): C =
+          writeColumns(columns, offset, combiner)
+      })
+    } else {
+      None
+    }
+  }
+
+  private def combinerColumns: Option[Columns[C, C]] = {
+    if (numColumns > 0) {
+      Some(new Columns[C, C](numColumns, retainsCombiner) {
+
+        override def init(columns: Array[Long], offset: Int, combiner: C): Unit =
+          initColumnsByCombiner(columns, offset, combiner)
+
+        override def merge(columns: Array[Long], offset: Int, combiner: C): Unit =
+          mergeColumnsByCombiner(columns, offset, combiner)
+
+        override def newCombiner(): C = Aggregation.this.newCombiner()
+
+        override def write(columns: Array[Long], offset: Int, combiner: C): C =
+          writeColumns(columns, offset, combiner)
+      })
+    } else {
+      None
+    }
+  }
 }
 
 object Aggregation {
 
+  private val Logger = LoggerFactory.getLogger(getClass)
+
+  private val InitialMask = 63
+
+  private val SampleInterval = 32
+
+  private val SlotSize = 12L
+
+  private val ReferenceSize = 8L
+
+  private val ShuffleKeyOverhead = 64L
+
+  private val DefaultInitialMemoryThreshold = 5L * 1024 * 1024
+
+  private def spread(h: Int): Int = h ^ (h >>> 16) // scalastyle:ignore
+
+  private abstract class Columns[V, C](val width: Int, val retainsCombiner: Boolean) {
+
+    def init(columns: Array[Long], offset: Int, value: V): Unit
+
+    def merge(columns: Array[Long], offset: Int, value: V): Unit
+
+    def newCombiner(): C
+
+    def write(columns: Array[Long], offset: Int, combiner: C): C
+  }
+
   trait Combiner[K, V, C] extends Iterable[(K, C)] {
     def insert(key: K, value: V): Unit
     def insertAll(iter: Iterator[_ <: Product2[K, V]]): Unit = {
@@ -70,6 +209,101 @@ object Aggregation {
     }
   }
 
+  class PartialCombiner[K, V, C] private[Aggregation] (
+    aggregation: Aggregation[K, V, C],
+    sampleSize: Int,
+    bypassRatio: Double) extends Combiner[K, V, C] {
+
+    private[this] val combiner = aggregation.valueCombiner()
+
+    private[this] val sampledKeys = mutable.HashSet.empty[K]
+
+    private[this] var sampled: Int = 0
+
+    private[this] var bypassed: Boolean = false
+
+    def isBypassed: Boolean = bypassed
+
+    def insert(key: K, value: V): Unit = {
+      combiner.insert(key, value)
+      if (sampled < sampleSize) {
+        sampledKeys += key
+        sampled += 1
+        if (sampled == sampleSize) {
+          val distinct = sampledKeys.size
+          sampledKeys.clear()
+          bypassed = distinct >= sampleSize * bypassRatio
+          if (bypassed && Logger.isDebugEnabled) {
+            Logger.debug(s"Bypassing partial aggregation: ${distinct} keys in ${sampled} records")
+          }
+        }
+      }
+    }
+
+    def passThrough(value: V): C = {
+      aggregation.initCombinerByValue(aggregation.newCombiner(), value)
+    }
+
+    def combine(iter: Iterator[_ <: Product2[K, V]]): Iterator[(K, C)] = {
+      while (!bypassed && iter.hasNext) {
+        val pair = iter.next()
+        insert(pair._1, pair._2)
+      }
+      if (bypassed) {
+        iterator ++ iter.map(pair => (pair._1, passThrough(pair._2)))
+      } else {
+        iterator
+      }
+    }
+
+    def iterator: Iterator[(K, C)] = combiner.iterator
+  }
+
+  private class SortedCombineIterator[K, V, C](
+    iter: BufferedIterator[Product2[K, V]],
+    grouping: Ordering[K],
+    createCombiner: V => C,
+    mergeValue: (C, V) => C) extends Iterator[(K, C)] {
+
+    private[this] val pending = mutable.ArrayBuffer.empty[(K, C)]
+
+    private[this] var index: Int = 0
+
+    override def hasNext: Boolean = index < pending.size || iter.hasNext
+
+    override def next(): (K, C) = {
+      if (index >= pending.size) {
+        fill()
+      }
+      val kc = pending(index)
+      index += 1
+      kc
+    }
+
+    private def fill(): Unit = {
+      pending.clear()
+      index = 0
+      val first = iter.next()
+      val key = first._1
+      var combiner = createCombiner(first._2)
+      while (iter.hasNext && grouping.equiv(iter.head._1, key)) {
+        val kv = iter.next()
+        if (kv._1 == key) {
+          combiner = mergeValue(combiner, kv._2)
+        } else {
+          // equivalent keys with other encodings can interleave with this one in sorted input
+          val i = pending.indexWhere(_._1 == kv._1)
+          if (i < 0) {
+            pending += ((kv._1, createCombiner(kv._2)))
+          } else {
+            pending(i) = (kv._1, mergeValue(pending(i)._2, kv._2))
+          }
+        }
+      }
+      pending += ((key, combiner))
+    }
+  }
+
   private class InMemoryCombiner[K, V, C](
     createCombiner: V => C,
     mergeValue: (C, V) => C,
@@ -89,6 +323,328 @@ object Aggregation {
     def iterator: Iterator[(K, C)] = combiners.iterator
   }
 
+  private class InPlaceCombiner[K, V, C](
+    createCombiner: V => C,
+    mergeValue: (C, V) => C,
+    mergeCombiners: (C, C) => C,
+    spillable: Boolean,
+    columnar: Option[Columns[V, C]]) extends Combiner[K, V, C] {
+
+    private[this] val cols: Columns[V, C] = columnar.orNull
+
+    private[this] val width: Int = columnar.map(_.width).getOrElse(0)
+
+    private[this] val retains: Boolean = columnar.forall(_.retainsCombiner)
+
+    private[this] val slotSize: Long =
+      SlotSize + (if (retains) ReferenceSize else 0L) + width * 8L
+
+    private[this] var mask: Int = InitialMask
+
+    private[this] var hashes: Array[Int] = new Array[Int](mask + 1)
+
+    private[this] var keys: Array[AnyRef] = new Array[AnyRef](mask + 1)
+
+    private[this] var combiners: Array[AnyRef] = newCombiners(mask + 1)
+
+    private[this] var columns: Array[Long] = new Array[Long]((mask + 1) * width)
+
+    private[this] var count: Int = 0
+
+    private[this] var entrySize: Long = 0L
+
+    private[this] val initialMemoryThreshold: Long =
+      Option(SparkEnv.get)
+        .map(_.conf.getSizeAsBytes(
+          "spark.shuffle.spill.initialMemoryThreshold", s"${DefaultInitialMemoryThreshold}"))
+        .getOrElse(DefaultInitialMemoryThreshold)
+
+    private[this] var memoryThreshold: Long = initialMemoryThreshold
+
+    private[this] val numElementsForceSpillThreshold: Long =
+      Option(SparkEnv.get)
+        .map(_.conf.getLong("spark.shuffle.spill.numElementsForceSpillThreshold", Long.MaxValue))
+        .getOrElse(Long.MaxValue)
+
+    private[this] val runs = mutable.ArrayBuffer.empty[(BlockId, File)]
+
+    private[this] val readers = mutable.ArrayBuffer.empty[DeserializationStream]
+
+    private[this] var iterating: Boolean = false
+
+    private[this] var memoryBytesSpilled: Long = 0L
+
+    private[this] var diskBytesSpilled: Long = 0L
+
+    private[this] val consumer: Option[TableConsumer] =
+      if (spillable) {
+        Option(TaskContext.get).map { tc =>
+          val consumer = new TableConsumer(tc.taskMemoryManager)
+          tc.addTaskCompletionListener(new TaskCompletionListener {
+            override def onTaskCompletion(context: TaskContext): Unit = release()
+          })
+          consumer
+        }
+      } else {
+        None
+      }
+
+    def insert(key: K, value: V): Unit = {
+      val h = spread(key.hashCode)
+      var slot = h & mask
+      while (keys(slot) != null // scalastyle:ignore
+        && (hashes(slot) != h || keys(slot) != key)) {
+        slot = (slot + 1) & mask
+      }
+      if (keys(slot) == null) { // scalastyle:ignore
+        hashes(slot) = h
+        keys(slot) = key.asInstanceOf[AnyRef]
+        if (retains) {
+          combiners(slot) = createCombiner(value).asInstanceOf[AnyRef]
+        }
+        if (width > 0) {
+          cols.init(columns, slot * width, value)
+        }
+        count += 1
+        if (consumer.isDefined) {
+          if (count >= numElementsForceSpillThreshold) {
+            spill()
+          } else if (count % SampleInterval == 0) {
+            maybeSpill(slot)
+          }
+        }
+        if (count * 2 > mask) {
+          grow()
+        }
+      } else if (width > 0) {
+        cols.merge(columns, slot * width, value)
+      } else {
+        combiners(slot) = mergeValue(combiners(slot).asInstanceOf[C], value).asInstanceOf[AnyRef]
+      }
+    }
+
+    private def combinerAt(slot: Int): C = {
+      if (width > 0) {
+        val combiner = if (retains) combiners(slot).asInstanceOf[C] else cols.newCombiner()
+        cols.write(columns, slot * width, combiner)
+      } else {
+        combiners(slot).asInstanceOf[C]
+      }
+    }
+
+    private def newCombiners(size: Int): Array[AnyRef] = {
+      new Array[AnyRef](if (retains) size else 0)
+    }
+
+    def iterator: Iterator[(K, C)] = {
+      iterating = true
+      if (runs.isEmpty) {
+        (0 to mask).iterator
+          .filter(slot => keys(slot) != null) // scalastyle:ignore
+          .map(slot => (keys(slot).asInstanceOf[K], combinerAt(slot)))
+      } else {
+        Option(TaskContext.get).foreach { c =>
+          c.taskMetrics.incMemoryBytesSpilled(memoryBytesSpilled)
+          c.taskMetrics.incDiskBytesSpilled(diskBytesSpilled)
+        }
+        if (Logger.isDebugEnabled) {
+          Logger.debug(
+            s"Merging ${runs.size} spilled runs of aggregation " +
+              s"(memory: ${memoryBytesSpilled} bytes, disk: ${diskBytesSpilled} bytes)")
+        }
+        val inMemory = sortedSlots().iterator.map { entry =>
+          val slot = entry.toInt
+          (keys(slot).asInstanceOf[K], combinerAt(slot))
+        }
+        new MergeIterator[K, C](
+          (inMemory +: runs.map(readRun)).map(_.buffered), mergeCombiners)
+      }
+    }
+
+    private def estimatedSize: Long = {
+      count * entrySize + (mask + 1).toLong * slotSize
+    }
+
+    private def maybeSpill(slot: Int): Unit = {
+      val size =
+        if (width > 0) {
+          keySize(keys(slot)) + (if (retains) SizeEstimator.estimate(combiners(slot)) else 0L)
+        } else {
+          SizeEstimator.estimate(keys(slot)) + SizeEstimator.estimate(combiners(slot))
+        }
+      entrySize = if (entrySize == 0L) size else (entrySize * 7 + size) / 8 // scalastyle:ignore
+      val current = estimatedSize
+      if (current >= memoryThreshold) {
+        memoryThreshold += consumer.get.acquire(2 * current - memoryThreshold)
+        if (current >= memoryThreshold) {
+          spill()
+        }
+      }
+    }
+
+    private def grow(): Unit = {
+      val oldHashes = hashes
+      val oldKeys = keys
+      val oldCombiners = combiners
+      val oldColumns = columns
+      mask = mask * 2 + 1
+      hashes = new Array[Int](mask + 1)
+      keys = new Array[AnyRef](mask + 1)
+      combiners = newCombiners(mask + 1)
+      columns = new Array[Long]((mask + 1) * width)
+      var i = 0
+      while (i < oldKeys.length) {
+        if (oldKeys(i) != null) { // scalastyle:ignore
+          var slot = oldHashes(i) & mask
+          while (keys(slot) != null) { // scalastyle:ignore
+            slot = (slot + 1) & mask
+          }
+          hashes(slot) = oldHashes(i)
+          keys(slot) = oldKeys(i)
+          if (retains) {
+            combiners(slot) = oldCombiners(i)
+          }
+          if (width > 0) {
+            System.arraycopy(oldColumns, i * width, columns, slot * width, width)
+          }
+        }
+        i += 1
+      }
+    }
+
+    private def sortedSlots(): Array[Long] = {
+      val entries = new Array[Long](count)
+      var i = 0
+      var slot = 0
+      while (slot <= mask) {
+        if (keys(slot) != null) { // scalastyle:ignore
+          entries(i) = (hashes(slot).toLong << 32) | slot // scalastyle:ignore
+          i += 1
+        }
+        slot += 1
+      }
+      Arrays.sort(entries)
+      entries
+    }
+
+    private def spill(): Long = {
+      val size = estimatedSize
+      val (blockId, file) = SparkEnv.get.createTempLocalBlock()
+      runs += ((blockId, file))
+      val out = SparkEnv.get.serializer.newInstance()
+        .serializeStream(
+          SparkEnv.get.wrapStream(blockId, new BufferedOutputStream(new FileOutputStream(file))))
+      try {
+        sortedSlots().foreach { entry =>
+          val slot = entry.toInt
+          out.writeKey[AnyRef](keys(slot))
+          out.writeValue[AnyRef](combinerAt(slot).asInstanceOf[AnyRef])
+        }
+      } finally {
+        out.close()
+      }
+      memoryBytesSpilled += size
+      diskBytesSpilled += file.length
+      mask = InitialMask
+      hashes = new Array[Int](mask + 1)
+      keys = new Array[AnyRef](mask + 1)
+      combiners = newCombiners(mask + 1)
+      columns = new Array[Long]((mask + 1) * width)
+      count = 0
+      val released = memoryThreshold - initialMemoryThreshold
+      consumer.foreach(_.free(released))
+      memoryThreshold = initialMemoryThreshold
+      released
+    }
+
+    private def readRun(run: (BlockId, File)): Iterator[(K, C)] = {
+      val (blockId, file) = run
+      val in = SparkEnv.get.serializer.newInstance()
+        .deserializeStream(
+          SparkEnv.get.wrapStream(blockId, new BufferedInputStream(new FileInputStream(file))))
+      readers += in
+      in.asKeyValueIterator.asInstanceOf[Iterator[(K, C)]]
+    }
+
+    private def release(): Unit = {
+      readers.foreach(_.close())
+      readers.clear()
+      runs.foreach(_._2.delete())
+      runs.clear()
+      consumer.foreach(_.free(memoryThreshold - initialMemoryThreshold))
+      memoryThreshold = initialMemoryThreshold
+    }
+
+    private class TableConsumer(taskMemoryManager: TaskMemoryManager)
+      extends MemoryConsumer(taskMemoryManager) {
+
+      def acquire(size: Long): Long = acquireMemory(size)
+
+      def free(size: Long): Unit = {
+        if (size > 0L) {
+          freeMemory(size)
+        }
+      }
+
+      override def spill(size: Long, trigger: MemoryConsumer): Long = {
+        if ((trigger eq this) || iterating || count == 0) 0L else InPlaceCombiner.this.spill()
+      }
+    }
+  }
+
+  private def keySize(key: AnyRef): Long = {
+    key match {
+      case key: ShuffleKey => ShuffleKeyOverhead + key.grouping.length + key.ordering.length
+      case _ => SizeEstimator.estimate(key)
+    }
+  }
+
+  private class MergeIterator[K, C](
+    runs: Seq[BufferedIterator[(K, C)]],
+    mergeCombiners: (C, C) => C) extends Iterator[(K, C)] {
+
+    private[this] val heap = mutable.PriorityQueue.empty[BufferedIterator[(K, C)]](
+      Ordering.fromLessThan((a, b) => spread(a.head._1.hashCode) > spread(b.head._1.hashCode)))
+
+    private[this] val pending = mutable.ArrayBuffer.empty[(K, C)]
+
+    private[this] var index: Int = 0
+
+    runs.filter(_.hasNext).foreach(heap.enqueue(_))
+
+    override def hasNext: Boolean = index < pending.size || heap.nonEmpty
+
+    override def next(): (K, C) = {
+      if (index >= pending.size) {
+        fill()
+      }
+      val kc = pending(index)
+      index += 1
+      kc
+    }
+
+    private def fill(): Unit = {
+      pending.clear()
+      index = 0
+      val h = spread(heap.head.head._1.hashCode)
+      while (heap.nonEmpty && spread(heap.head.head._1.hashCode) == h) {
+        val run = heap.dequeue()
+        while (run.hasNext && spread(run.head._1.hashCode) == h) {
+          val (key, combiner) = run.next()
+          val i = pending.indexWhere(_._1 == key)
+          if (i < 0) {
+            pending += ((key, combiner))
+          } else {
+            pending(i) = (key, mergeCombiners(pending(i)._2, combiner))
+          }
+        }
+        if (run.hasNext) {
+          heap.enqueue(run)
+        }
+      }
+    }
+  }
+
   private class ExternalCombiner[K, V, C](
     createCombiner: V => C,
     mergeValue: (C, V) => C,
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.fragment
+
+import java.util.{ ArrayList, Arrays, Collections, List => JList, UUID }
+import java.util.concurrent.{ Executors, ScheduledExecutorService, ThreadFactory, TimeUnit }
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable.AbstractMap
+import scala.collection.mutable
+
+import org.apache.spark.{ SparkEnv, TaskContext }
+import org.apache.spark.util.TaskCompletionListener
+
+import com.asakusafw.spark.runtime.Props
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+import com.asakusafw.spark.runtime.util.BloomFilter
+
+trait GroupLookup[V] {
+
+  def lookup(bytes: Array[Byte], offset: Int, length: Int): JList[V]
+}
+
+class GroupIndex[V] private (
+  val id: Long,
+  heap: Array[Byte],
+  offsets: Array[Int],
+  hashes: Array[Int],
+  groups: Array[JList[V]],
+  bloomFilter: Option[BloomFilter])
+  extends AbstractMap[ShuffleKey, Seq[V]] with GroupLookup[V] with Serializable {
+
+  import GroupIndex._ // scalastyle:ignore
+
+  @transient private[this] lazy val table: Array[Int] = {
+    val mask = tableSize(hashes.length) - 1
+    val table = new Array[Int](mask + 1)
+    var i = 0
+    while (i < hashes.length) {
+      var slot = spread(hashes(i)) & mask
+      while (table(slot) != 0) {
+        slot = (slot + 1) & mask
+      }
+      table(slot) = i + 1
+      i += 1
+    }
+    table
+  }
+
+  override def lookup(bytes: Array[Byte], offset: Int, length: Int): JList[V] = {
+    lookup(hash(bytes, offset, length), bytes, offset, length)
+  }
+
+  def lookup(h: Int, bytes: Array[Byte], offset: Int, length: Int): JList[V] = {
+    val i = indexOf(h, bytes, offset, length)
+    if (i >= 0) groups(i) else Collections.emptyList[V]()
+  }
+
+  private def indexOf(h: Int, bytes: Array[Byte], offset: Int, length: Int): Int = {
+    bloomFilter match {
+      case Some(filter) if !filter.mightContain(h) => -1
+      case _ => probe(h, bytes, offset, length)
+    }
+  }
+
+  private def probe(h: Int, bytes: Array[Byte], offset: Int, length: Int): Int = {
+    val table = this.table
+    val mask = table.length - 1
+    var slot = spread(h) & mask
+    var found = -1
+    var entry = table(slot)
+    while (found < 0 && entry != 0) {
+      val i = entry - 1
+      if (hashes(i) == h && matches(i, bytes, offset, length)) {
+        found = i
+      } else {
+        slot = (slot + 1) & mask
+        entry = table(slot)
+      }
+    }
+    found
+  }
+
+  private def matches(i: Int, bytes: Array[Byte], offset: Int, length: Int): Boolean = {
+    val start = offsets(i)
+    if (offsets(i + 1) - start != length) {
+      false
+    } else {
+      var j = 0
+      while (j < length && heap(start + j) == bytes(offset + j)) {
+        j += 1
+      }
+      j == length
+    }
+  }
+
+  override def size: Int = hashes.length
+
+  override def get(key: ShuffleKey): Option[Seq[V]] = {
+    val grouping = key.grouping
+    val i = indexOf(hash(grouping, 0, grouping.length), grouping, 0, grouping.length)
+    if (i >= 0) Some(groups(i).asScala) else None
+  }
+
+  override def iterator: Iterator[(ShuffleKey, Seq[V])] = {
+    Iterator.range(0, size).map { i =>
+      (new ShuffleKey(Arrays.copyOfRange(heap, offsets(i), offsets(i + 1))), groups(i).asScala)
+    }
+  }
+
+  override def +[B >: Seq[V]](kv: (ShuffleKey, B)): Map[ShuffleKey, B] = {
+    Map[ShuffleKey, B](iterator.toSeq: _*) + kv
+  }
+
+  override def -(key: ShuffleKey): Map[ShuffleKey, Seq[V]] = {
+    Map(iterator.toSeq: _*) - key
+  }
+}
+
+object GroupIndex {
+
+  def apply[V](
+    entries: Iterator[(ShuffleKey, Seq[V])],
+    bloomFilterThreshold: Int): GroupIndex[V] = {
+    val keys = mutable.ArrayBuffer.empty[Array[Byte]]
+    val groups = mutable.ArrayBuffer.empty[JList[V]]
+    entries.foreach {
+      case (key, values) =>
+        keys += key.grouping
+        val group = new ArrayList[V](values.size)
+        values.foreach(group.add)
+        groups += group
+    }
+    val size = keys.size
+    val offsets = new Array[Int](size + 1)
+    val hashes = new Array[Int](size)
+    val heap = new Array[Byte](keys.map(_.length).sum)
+    var i = 0
+    while (i < size) {
+      val grouping = keys(i)
+      System.arraycopy(grouping, 0, heap, offsets(i), grouping.length)
+      offsets(i + 1) = offsets(i) + grouping.length
+      hashes(i) = hash(grouping, 0, grouping.length)
+      i += 1
+    }
+    val bloomFilter =
+      if (bloomFilterThreshold >= 0 && size >= bloomFilterThreshold) {
+        val bloomFilter = new BloomFilter(size)
+        hashes.foreach(bloomFilter.put)
+        Some(bloomFilter)
+      } else {
+        None
+      }
+    new GroupIndex(
+      UUID.randomUUID().getLeastSignificantBits,
+      heap, offsets, hashes, groups.toArray, bloomFilter)
+  }
+
+  def bloomFilterThreshold: Int = {
+    Option(SparkEnv.get)
+      .map(_.conf.getInt(
+        Props.BroadcastBloomFilterThreshold, Props.DefaultBroadcastBloomFilterThreshold))
+      .getOrElse(Props.DefaultBroadcastBloomFilterThreshold)
+  }
+
+  def hash(bytes: Array[Byte], offset: Int, length: Int): Int = {
+    var h = 1
+    var i = offset
+    val end = offset + length
+    while (i < end) {
+      h = 31 * h + bytes(i) // scalastyle:ignore
+      i += 1
+    }
+    h
+  }
+
+  private def spread(h: Int): Int = h ^ (h >>> 16) // scalastyle:ignore
+
+  private def tableSize(size: Int): Int = {
+    var n = 2
+    while (n < size * 2) {
+      n <<= 1
+    }
+    n
+  }
+
+  private class Entry {
+
+    val tasks = mutable.Set.empty[Long]
+
+    var index: GroupIndex[_] = _
+
+    var released: Long = 0L
+  }
+
+  private[this] val entries = mutable.Map.empty[Any, Entry]
+
+  private[this] val tasks = mutable.Map.empty[Long, mutable.Set[Any]]
+
+  private[this] lazy val purger: ScheduledExecutorService =
+    Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+      override def newThread(runnable: Runnable): Thread = {
+        val thread = new Thread(runnable, "asakusa-group-index-purger")
+        thread.setDaemon(true)
+        thread
+      }
+    })
+
+  private[fragment] def acquire[V](key: Any)(load: => GroupIndex[V]): GroupIndex[V] = {
+    Option(TaskContext.get) match {
+      case Some(context) =>
+        val taskAttemptId = context.taskAttemptId
+        val (entry, first) = entries.synchronized {
+          val entry = entries.getOrElseUpdate(key, new Entry())
+          entry.tasks += taskAttemptId
+          val first = !tasks.contains(taskAttemptId)
+          tasks.getOrElseUpdate(taskAttemptId, mutable.Set.empty) += key
+          (entry, first)
+        }
+        if (first) {
+          context.addTaskCompletionListener(new TaskCompletionListener {
+            override def onTaskCompletion(context: TaskContext): Unit = release(taskAttemptId)
+          })
+        }
+        entry.synchronized {
+          if (entry.index == null) {
+            entry.index = load
+          }
+          entry.index.asInstanceOf[GroupIndex[V]]
+        }
+      case None => load
+    }
+  }
+
+  private def release(taskAttemptId: Long): Unit = {
+    val retention = Option(SparkEnv.get)
+      .map(_.conf.getTimeAsMs(
+        Props.BroadcastIndexRetention, Props.DefaultBroadcastIndexRetention))
+      .getOrElse(0L)
+    entries.synchronized {
+      tasks.remove(taskAttemptId).foreach(_.foreach { key =>
+        entries.get(key).foreach { entry =>
+          entry.tasks -= taskAttemptId
+          if (entry.tasks.isEmpty) {
+            if (retention > 0L) {
+              entry.released += 1L
+              val released = entry.released
+              purger.schedule(new Runnable {
+                override def run(): Unit = purge(key, entry, released)
+              }, retention, TimeUnit.MILLISECONDS)
+            } else {
+              entries.remove(key)
+            }
+          }
+        }
+      })
+    }
+  }
+
+  private def purge(key: Any, entry: Entry, released: Long): Unit = {
+    entries.synchronized {
+      if (entry.tasks.isEmpty
+        && entry.released == released
+        && entries.get(key).exists(_ eq entry)) {
+        entries.remove(key)
+      }
+    }
+  }
+
+  private[fragment] def cached: Set[Any] = entries.synchronized {
+    entries.keySet.toSet
+  }
+}
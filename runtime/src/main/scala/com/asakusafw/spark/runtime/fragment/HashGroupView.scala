@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.fragment
+
+import java.io.DataOutput
+import java.util.{ List => JList }
+
+import com.asakusafw.runtime.io.util.DataBuffer
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+abstract class HashGroupView[V](map: Map[ShuffleKey, Seq[V]])
+  extends MapGroupView[ShuffleKey, V](map) {
+
+  private[fragment] val lookup: GroupLookup[V] = map match {
+    case index: GroupIndex[V] @unchecked => GroupIndex.acquire(index.id)(index)
+    case partitioned: PartitionedGroupIndex[V] @unchecked => partitioned.reader()
+    case _ => GroupIndex(map.iterator, GroupIndex.bloomFilterThreshold)
+  }
+
+  private[this] val keyBuffer = new DataBuffer()
+
+  def keyOutput: DataOutput = {
+    keyBuffer.reset(0, 0)
+    keyBuffer
+  }
+
+  def findByKeyOutput(): JList[V] = {
+    lookup.lookup(
+      keyBuffer.getData,
+      keyBuffer.getReadPosition,
+      keyBuffer.getReadLimit - keyBuffer.getReadPosition)
+  }
+
+  override def find(elements: AnyRef*): JList[V] = {
+    val grouping = key(elements).grouping
+    lookup.lookup(grouping, 0, grouping.length)
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.fragment
+
+import java.io.{
+  BufferedInputStream,
+  BufferedOutputStream,
+  DataInputStream,
+  DataOutputStream,
+  File,
+  FileInputStream,
+  FileOutputStream
+}
+import java.util.{ AbstractList, Arrays, RandomAccess }
+
+import scala.collection.mutable
+
+import org.apache.hadoop.io.Writable
+import org.apache.spark.TaskContext
+import org.apache.spark.memory.{ MemoryConsumer, TaskMemoryManager }
+import org.apache.spark.unsafe.Platform
+import org.apache.spark.unsafe.memory.MemoryBlock
+import org.apache.spark.util.TaskCompletionListener
+
+import com.asakusafw.runtime.flow.ListBuffer
+import com.asakusafw.runtime.io.util.DataBuffer
+import com.asakusafw.spark.runtime.util.SpillFiles
+
+class OffHeapListBuffer[E <: Writable](pageSize: Int)
+  extends AbstractList[E]
+  with ListBuffer[E]
+  with RandomAccess {
+
+  import OffHeapListBuffer._ // scalastyle:ignore
+
+  private[this] val pages = mutable.ArrayBuffer.empty[MemoryBlock]
+
+  private[this] var pageIndex: Int = 0
+
+  private[this] var pageOffset: Int = 0
+
+  private[this] var positions: Array[Long] = new Array[Long](16) // scalastyle:ignore
+
+  private[this] var count: Int = 0
+
+  private[this] var value: E = _
+
+  private[this] var advanced: Boolean = false
+
+  private[this] val writeBuffer = new DataBuffer()
+
+  private[this] val readBuffer = new DataBuffer()
+
+  private[this] var bytes: Array[Byte] = new Array[Byte](256) // scalastyle:ignore
+
+  private[this] var spillFile: File = _
+
+  private[this] var spillOut: DataOutputStream = _
+
+  private[this] var spillSize: Long = 0L
+
+  private[this] var spillIn: FileInputStream = _
+
+  private[this] var spillReader: DataInputStream = _
+
+  private[this] var spillReadPosition: Long = -1L
+
+  private[this] val consumer: Option[PageConsumer] = Option(TaskContext.get).map { tc =>
+    val consumer = new PageConsumer(tc.taskMemoryManager, pageSize, () => spill())
+    tc.addTaskCompletionListener(new TaskCompletionListener {
+      override def onTaskCompletion(context: TaskContext): Unit = release()
+    })
+    consumer
+  }
+
+  override def begin(): Unit = {
+    count = 0
+    pageIndex = 0
+    pageOffset = 0
+    advanced = false
+    closeSpill()
+  }
+
+  override def end(): Unit = {
+    commit()
+    if (spillOut != null) {
+      spillOut.flush()
+    }
+  }
+
+  override def isExpandRequired(): Boolean = value == null
+
+  override def expand(value: E): Unit = {
+    this.value = value
+  }
+
+  override def advance(): E = {
+    commit()
+    advanced = true
+    value
+  }
+
+  override def shrink(): Unit = {
+    closeSpill()
+    while (pages.size > 1) {
+      releasePage(pages.remove(pages.size - 1))
+    }
+    pageIndex = 0
+    pageOffset = 0
+    count = 0
+    advanced = false
+    if (positions.length > 16) { // scalastyle:ignore
+      positions = new Array[Long](16) // scalastyle:ignore
+    }
+  }
+
+  override def get(index: Int): E = {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(s"${index}")
+    }
+    val position = positions(index)
+    if (position >= 0L) {
+      readPage(position)
+    } else {
+      readSpill(-(position + 1L))
+    }
+    value.readFields(readBuffer)
+    value
+  }
+
+  override def size(): Int = count
+
+  private[fragment] def spill(): Long = {
+    if (pages.isEmpty) {
+      0L
+    } else {
+      var i = 0
+      while (i < count) {
+        val position = positions(i)
+        if (position >= 0L) {
+          val length = readPage(position)
+          positions(i) = writeSpill(bytes, 0, length)
+        }
+        i += 1
+      }
+      if (spillOut != null) {
+        spillOut.flush()
+      }
+      val freed = pages.size.toLong * pageSize
+      pages.foreach(releasePage)
+      pages.clear()
+      pageIndex = 0
+      pageOffset = 0
+      freed
+    }
+  }
+
+  private def commit(): Unit = {
+    if (advanced) {
+      writeBuffer.reset(0, 0)
+      value.write(writeBuffer)
+      val length = writeBuffer.getReadLimit - writeBuffer.getReadPosition
+      val position =
+        if (spillOut == null && reservePage(length + 4)) { // scalastyle:ignore
+          val page = pages(pageIndex)
+          val address = page.getBaseOffset + pageOffset
+          Platform.putInt(page.getBaseObject, address, length)
+          Platform.copyMemory(
+            writeBuffer.getData, Platform.BYTE_ARRAY_OFFSET + writeBuffer.getReadPosition,
+            page.getBaseObject, address + 4, length) // scalastyle:ignore
+          val position = (pageIndex.toLong << 32) | pageOffset // scalastyle:ignore
+          pageOffset += length + 4 // scalastyle:ignore
+          position
+        } else {
+          writeSpill(writeBuffer.getData, writeBuffer.getReadPosition, length)
+        }
+      if (count == positions.length) {
+        positions = Arrays.copyOf(positions, count * 2)
+      }
+      positions(count) = position
+      count += 1
+      advanced = false
+    }
+  }
+
+  private def reservePage(required: Int): Boolean = {
+    if (required > pageSize) {
+      false
+    } else {
+      if (pageIndex < pages.size && pageOffset + required > pageSize) {
+        pageIndex += 1
+        pageOffset = 0
+      }
+      pageIndex < pages.size || acquirePage()
+    }
+  }
+
+  private def acquirePage(): Boolean = {
+    consumer match {
+      case Some(c) =>
+        c.allocate() match {
+          case Some(page) =>
+            pages += page
+            true
+          case None =>
+            false
+        }
+      case None =>
+        pages += MemoryBlock.fromLongArray(new Array[Long]((pageSize + 7) / 8)) // scalastyle:ignore
+        true
+    }
+  }
+
+  private def releasePage(page: MemoryBlock): Unit = {
+    consumer.foreach(_.free(page))
+  }
+
+  private def readPage(position: Long): Int = {
+    val page = pages((position >>> 32).toInt) // scalastyle:ignore
+    val address = page.getBaseOffset + position.toInt
+    val length = Platform.getInt(page.getBaseObject, address)
+    ensureBytes(length)
+    Platform.copyMemory(
+      page.getBaseObject, address + 4, // scalastyle:ignore
+      bytes, Platform.BYTE_ARRAY_OFFSET, length)
+    readBuffer.reset(bytes, 0, length)
+    length
+  }
+
+  private def writeSpill(data: Array[Byte], offset: Int, length: Int): Long = {
+    if (spillOut == null) {
+      spillFile = SpillFiles.create("asakusa-spark-buffer")
+      spillOut = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(spillFile)))
+      spillSize = 0L
+    }
+    val position = spillSize
+    spillOut.writeInt(length)
+    spillOut.write(data, offset, length)
+    spillSize += length + 4 // scalastyle:ignore
+    -(position + 1L)
+  }
+
+  private def readSpill(position: Long): Unit = {
+    if (spillReader == null || spillReadPosition != position) {
+      if (spillIn != null) {
+        spillIn.close()
+      }
+      spillIn = new FileInputStream(spillFile)
+      spillIn.getChannel.position(position)
+      spillReader = new DataInputStream(new BufferedInputStream(spillIn))
+    }
+    val length = spillReader.readInt()
+    ensureBytes(length)
+    spillReader.readFully(bytes, 0, length)
+    readBuffer.reset(bytes, 0, length)
+    spillReadPosition = position + length + 4 // scalastyle:ignore
+  }
+
+  private def ensureBytes(length: Int): Unit = {
+    if (bytes.length < length) {
+      bytes = new Array[Byte](math.max(bytes.length * 2, length))
+    }
+  }
+
+  private def closeSpill(): Unit = {
+    if (spillOut != null) {
+      spillOut.close()
+      spillOut = null
+    }
+    if (spillIn != null) {
+      spillIn.close()
+      spillIn = null
+      spillReader = null
+      spillReadPosition = -1L
+    }
+    if (spillFile != null) {
+      spillFile.delete()
+      spillFile = null
+    }
+  }
+
+  private def release(): Unit = {
+    closeSpill()
+    pages.foreach(releasePage)
+    pages.clear()
+    pageIndex = 0
+    pageOffset = 0
+    count = 0
+  }
+}
+
+object OffHeapListBuffer {
+
+  private class PageConsumer(
+    taskMemoryManager: TaskMemoryManager,
+    pageSize: Int,
+    onSpill: () => Long)
+    extends MemoryConsumer(
+      taskMemoryManager, pageSize.toLong, taskMemoryManager.getTungstenMemoryMode) {
+
+    def allocate(): Option[MemoryBlock] = {
+      val page = taskMemoryManager.allocatePage(pageSize.toLong, this)
+      if (page != null) { // scalastyle:ignore
+        used += page.size
+      }
+      Option(page)
+    }
+
+    def free(page: MemoryBlock): Unit = {
+      used -= page.size
+      taskMemoryManager.freePage(page, this)
+    }
+
+    override def spill(size: Long, trigger: MemoryConsumer): Long = {
+      if (trigger eq this) 0L else onSpill()
+    }
+  }
+}
@@ -16,30 +16,84 @@
 package com.asakusafw.spark.runtime.fragment
 
 import org.apache.hadoop.io.Writable
+import org.apache.spark.{ SparkConf, SparkEnv }
 
 import com.asakusafw.runtime.flow.{ ArrayListBuffer, FileMapListBuffer, ListBuffer }
+import com.asakusafw.runtime.io.util.DataBuffer
 import com.asakusafw.runtime.model.DataModel
+import com.asakusafw.spark.runtime.JobContext.FragmentStatistics
+import com.asakusafw.spark.runtime.Props
 
 abstract class OutputFragment[T <: DataModel[T] with Writable](bufferSize: Int)
   extends Fragment[T] {
 
+  import OutputFragment._ // scalastyle:ignore
+
   def this() = this(-1)
 
   def newDataModel(): T
 
-  private[this] val buf: ListBuffer[T] = {
-    val buf =
-      if (bufferSize >= 0) {
-        new FileMapListBuffer[T](bufferSize)
-      } else {
-        new ArrayListBuffer[T]()
-      }
+  private[this] val conf = Option(SparkEnv.get).map(_.conf)
+
+  private[this] val offHeap =
+    conf.exists(_.getBoolean(Props.FragmentOffHeap, Props.DefaultFragmentOffHeap))
+
+  private[this] var statistics: Option[FragmentStatistics] = None
+
+  private[this] var sampler: Sampler =
+    if (bufferSize < 0 && !offHeap
+      && conf.exists(_.getBoolean(Props.FragmentAdaptive, Props.DefaultFragmentAdaptive))) {
+      new Sampler(conf.get)
+    } else {
+      null
+    }
+
+  private[this] var buf: ListBuffer[T] = {
+    val buf = newBuffer(bufferSize)
     buf.begin()
     buf
   }
 
+  def setStatistics(statistics: Option[FragmentStatistics]): Unit = {
+    this.statistics = statistics
+  }
+
+  private[fragment] def buffer: ListBuffer[T] = buf
+
+  private def newBuffer(bufferSize: Int): ListBuffer[T] = {
+    if (offHeap) {
+      new OffHeapListBuffer[T](
+        conf.get.getInt(Props.FragmentOffHeapPageSize, Props.DefaultFragmentOffHeapPageSize))
+    } else if (bufferSize >= 0) {
+      new FileMapListBuffer[T](bufferSize)
+    } else {
+      new ArrayListBuffer[T]()
+    }
+  }
+
+  private def switchBuffer(window: Int): Unit = {
+    buf.end()
+    val next = newBuffer(window)
+    next.begin()
+    val iter = buf.iterator()
+    while (iter.hasNext) {
+      if (next.isExpandRequired()) {
+        next.expand(newDataModel())
+      }
+      next.advance().copyFrom(iter.next())
+    }
+    buf.shrink()
+    buf = next
+  }
+
   override def doReset(): Unit = {
     buf.shrink()
+    if (sampler != null && sampler.sampled()) {
+      sampler.decide(statistics).foreach { window =>
+        buf = newBuffer(window)
+      }
+      sampler = null
+    }
     buf.begin()
   }
 
@@ -48,6 +102,13 @@ abstract class OutputFragment[T <: DataModel[T] with Writable](bufferSize: Int)
       buf.expand(newDataModel())
     }
     buf.advance().copyFrom(result)
+    if (sampler != null) {
+      sampler.add(result)
+      if (sampler.exceeded) {
+        sampler.decide(statistics).foreach(switchBuffer)
+        sampler = null
+      }
+    }
   }
 
   def iterator: Iterator[T] = {
@@ -78,3 +139,68 @@ abstract class OutputFragment[T <: DataModel[T] with Writable](bufferSize: Int)
     }
   }
 }
+
+object OutputFragment {
+
+  private val SampleInterval = 16
+
+  private[fragment] class Sampler(samples: Int, threshold: Long) {
+
+    def this(conf: SparkConf) = this(
+      conf.getInt(Props.FragmentAdaptiveSamples, Props.DefaultFragmentAdaptiveSamples),
+      conf.getLong(Props.FragmentAdaptiveThreshold, Props.DefaultFragmentAdaptiveThreshold))
+
+    private[this] val buffer = new DataBuffer()
+
+    private[this] var inputs: Int = 0
+
+    private[this] var fanout: Long = 0L
+
+    private[this] var maxFanout: Long = 0L
+
+    private[this] var sampledRecords: Long = 0L
+
+    private[this] var sampledBytes: Long = 0L
+
+    def add(value: Writable): Unit = {
+      if (fanout % SampleInterval == 0L) {
+        buffer.reset(0, 0)
+        value.write(buffer)
+        sampledRecords += 1L
+        sampledBytes += buffer.getReadLimit - buffer.getReadPosition
+      }
+      fanout += 1L
+    }
+
+    def exceeded: Boolean = estimatedBytes > threshold
+
+    def sampled(): Boolean = {
+      if (fanout > 0L) {
+        inputs += 1
+        maxFanout = math.max(maxFanout, fanout)
+        fanout = 0L
+      }
+      inputs >= samples || exceeded
+    }
+
+    def decide(stats: Option[FragmentStatistics]): Option[Int] = {
+      val recordBytes = this.recordBytes
+      val fanout = math.max(maxFanout, this.fanout)
+      if (exceeded) {
+        val window = math.max(threshold / math.max(recordBytes, 1L), 1L)
+          .min(Int.MaxValue.toLong).toInt
+        stats.foreach(_.addSpilling(fanout, recordBytes, window))
+        Some(window)
+      } else {
+        stats.foreach(_.addInMemory(fanout, recordBytes))
+        None
+      }
+    }
+
+    private def recordBytes: Long = {
+      if (sampledRecords > 0L) sampledBytes / sampledRecords else 0L
+    }
+
+    private def estimatedBytes: Long = math.max(maxFanout, fanout) * recordBytes
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.fragment
+
+import java.util.{ Arrays, List => JList }
+
+import scala.collection.immutable.AbstractMap
+
+import org.apache.spark.{ HashPartitioner, Partitioner, SparkEnv }
+import org.apache.spark.storage.RDDBlockId
+
+import org.apache.spark.backdoor._
+
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+class PartitionedGroupIndex[V](
+  val rddId: Int,
+  val numPartitions: Int,
+  partitioner: Partitioner)
+  extends AbstractMap[ShuffleKey, Seq[V]] with Serializable {
+
+  def reader(): GroupLookup[V] = new GroupLookup[V] {
+
+    private[this] val indices = new Array[GroupIndex[V]](numPartitions)
+
+    override def lookup(bytes: Array[Byte], offset: Int, length: Int): JList[V] = {
+      val h = GroupIndex.hash(bytes, offset, length)
+      val p = partitionOf(h, bytes, offset, length)
+      var index = indices(p)
+      if (index == null) {
+        index = partition(p)
+        indices(p) = index
+      }
+      index.lookup(h, bytes, offset, length)
+    }
+  }
+
+  def partition(p: Int): GroupIndex[V] = {
+    GroupIndex.acquire((rddId, p)) {
+      val blockId = RDDBlockId(rddId, p)
+      SparkEnv.get.getBlockValues(blockId)
+        .map(_.toVector.head.asInstanceOf[GroupIndex[V]])
+        .getOrElse {
+          throw new IllegalStateException(s"Broadcast block [${blockId}] is not available.")
+        }
+    }
+  }
+
+  private def partitionOf(h: Int, bytes: Array[Byte], offset: Int, length: Int): Int = {
+    partitioner match {
+      case _: HashPartitioner =>
+        val p = h % numPartitions
+        if (p < 0) p + numPartitions else p
+      case _ =>
+        partitioner.getPartition(
+          new ShuffleKey(Arrays.copyOfRange(bytes, offset, offset + length)))
+    }
+  }
+
+  override def size: Int = Iterator.range(0, numPartitions).map(partition(_).size).sum
+
+  override def get(key: ShuffleKey): Option[Seq[V]] = {
+    val grouping = key.grouping
+    val h = GroupIndex.hash(grouping, 0, grouping.length)
+    partition(partitionOf(h, grouping, 0, grouping.length)).get(key)
+  }
+
+  override def iterator: Iterator[(ShuffleKey, Seq[V])] = {
+    Iterator.range(0, numPartitions).flatMap(partition(_).iterator)
+  }
+
+  override def +[B >: Seq[V]](kv: (ShuffleKey, B)): Map[ShuffleKey, B] = {
+    Map[ShuffleKey, B](iterator.toSeq: _*) + kv
+  }
+
+  override def -(key: ShuffleKey): Map[ShuffleKey, Seq[V]] = {
+    Map(iterator.toSeq: _*) - key
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.fragment
+
+import java.io.{
+  BufferedInputStream,
+  BufferedOutputStream,
+  DataInputStream,
+  File,
+  FileInputStream,
+  FileOutputStream,
+  OutputStream
+}
+import java.util.{ AbstractList, ArrayList, Arrays, RandomAccess }
+
+import org.apache.hadoop.io.Writable
+import org.apache.spark.{ SparkEnv, TaskContext }
+import org.apache.spark.util.TaskCompletionListener
+
+import com.asakusafw.runtime.flow.ListBuffer
+import com.asakusafw.runtime.io.util.DataBuffer
+import com.asakusafw.spark.runtime.Props
+import com.asakusafw.spark.runtime.util.SpillFiles
+
+class SpillableListBuffer[E <: Writable](threshold: Int)
+  extends AbstractList[E]
+  with ListBuffer[E]
+  with RandomAccess {
+
+  import SpillableListBuffer._ // scalastyle:ignore
+
+  def this() = this(
+    Option(SparkEnv.get).map(_.conf)
+      .map(_.getInt(Props.CoGroupSpillThreshold, Props.DefaultCoGroupSpillThreshold))
+      .getOrElse(Props.DefaultCoGroupSpillThreshold))
+
+  private[this] val elements = new ArrayList[E]()
+
+  private[this] var count: Int = 0
+
+  private[this] var spillValue: E = _
+
+  private[this] var advanced: Boolean = false
+
+  private[this] val writeBuffer = new DataBuffer()
+
+  private[this] var spillFile: File = _
+
+  private[this] var spillOut: OutputStream = _
+
+  private[this] var spillSize: Long = 0L
+
+  private[this] var checkpoints: Array[Long] = new Array[Long](16) // scalastyle:ignore
+
+  private[this] var spillReader: DataInputStream = _
+
+  private[this] var nextSpillIndex: Int = -1
+
+  Option(TaskContext.get).foreach { tc =>
+    tc.addTaskCompletionListener(new TaskCompletionListener {
+      override def onTaskCompletion(context: TaskContext): Unit = closeSpill()
+    })
+  }
+
+  override def begin(): Unit = {
+    count = 0
+    advanced = false
+    closeSpill()
+  }
+
+  override def end(): Unit = {
+    commit()
+    if (spillOut != null) {
+      spillOut.flush()
+    }
+  }
+
+  override def isExpandRequired(): Boolean = {
+    if (count < threshold) {
+      count >= elements.size
+    } else {
+      spillValue == null
+    }
+  }
+
+  override def expand(value: E): Unit = {
+    if (count < threshold) {
+      elements.add(value)
+    } else {
+      spillValue = value
+    }
+  }
+
+  override def advance(): E = {
+    commit()
+    if (count < threshold) {
+      val value = elements.get(count)
+      count += 1
+      value
+    } else {
+      advanced = true
+      spillValue
+    }
+  }
+
+  override def shrink(): Unit = {
+    closeSpill()
+    while (elements.size > MinRetainedElements) {
+      elements.remove(elements.size - 1)
+    }
+    count = 0
+    advanced = false
+    if (checkpoints.length > 16) { // scalastyle:ignore
+      checkpoints = new Array[Long](16) // scalastyle:ignore
+    }
+  }
+
+  override def get(index: Int): E = {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(s"${index}")
+    }
+    if (index < threshold) {
+      elements.get(index)
+    } else {
+      val spillIndex = index - threshold
+      if (spillIndex != nextSpillIndex - 1) {
+        readSpill(spillIndex)
+      }
+      spillValue
+    }
+  }
+
+  override def size(): Int = count
+
+  private def commit(): Unit = {
+    if (advanced) {
+      val spillIndex = count - threshold
+      if (spillOut == null) {
+        spillFile = SpillFiles.create("asakusa-spark-cogroup")
+        spillOut = new BufferedOutputStream(new FileOutputStream(spillFile))
+        spillSize = 0L
+      }
+      if (spillIndex % CheckpointInterval == 0) {
+        val i = spillIndex / CheckpointInterval
+        if (i == checkpoints.length) {
+          checkpoints = Arrays.copyOf(checkpoints, i * 2)
+        }
+        checkpoints(i) = spillSize
+      }
+      writeBuffer.reset(0, 0)
+      spillValue.write(writeBuffer)
+      val length = writeBuffer.getReadLimit - writeBuffer.getReadPosition
+      spillOut.write(writeBuffer.getData, writeBuffer.getReadPosition, length)
+      spillSize += length
+      count += 1
+      advanced = false
+    }
+  }
+
+  private def readSpill(spillIndex: Int): Unit = {
+    if (spillReader == null
+      || spillIndex < nextSpillIndex
+      || spillIndex - nextSpillIndex >= CheckpointInterval) {
+      closeReader()
+      val checkpoint = spillIndex / CheckpointInterval
+      val in = new FileInputStream(spillFile)
+      in.getChannel.position(checkpoints(checkpoint))
+      spillReader = new DataInputStream(new BufferedInputStream(in))
+      nextSpillIndex = checkpoint * CheckpointInterval
+    }
+    while (nextSpillIndex <= spillIndex) {
+      spillValue.readFields(spillReader)
+      nextSpillIndex += 1
+    }
+  }
+
+  private def closeReader(): Unit = {
+    if (spillReader != null) {
+      spillReader.close()
+      spillReader = null
+      nextSpillIndex = -1
+    }
+  }
+
+  private def closeSpill(): Unit = {
+    if (spillOut != null) {
+      spillOut.close()
+      spillOut = null
+    }
+    closeReader()
+    if (spillFile != null) {
+      spillFile.delete()
+      spillFile = null
+    }
+  }
+}
+
+object SpillableListBuffer {
+
+  private val CheckpointInterval = 1024
+
+  private val MinRetainedElements = 256
+}
@@ -16,6 +16,8 @@
 package com.asakusafw.spark.runtime.fragment
 package user.join
 
+import java.io.DataOutput
+
 import scala.collection.JavaConverters._
 
 import com.asakusafw.runtime.core.GroupView
@@ -29,8 +31,22 @@ abstract class BroadcastJoinOperatorFragment[M <: DataModel[M], T <: DataModel[T
 
   protected def keyElements(tx: T): Array[AnyRef]
 
+  protected def writeKeyElements(tx: T, out: DataOutput): Unit
+
+  private[this] lazy val hashMasters: Option[HashGroupView[M]] = masters match {
+    case view: HashGroupView[M] @unchecked => Some(view)
+    case _ => None
+  }
+
   override def doAdd(tx: T): Unit = {
-    val master = masterSelection(masters.find(keyElements(tx): _*), tx)
+    val found = hashMasters match {
+      case Some(view) =>
+        writeKeyElements(tx, view.keyOutput)
+        view.findByKeyOutput()
+      case None =>
+        masters.find(keyElements(tx): _*)
+    }
+    val master = masterSelection(found, tx)
     join(master, tx)
   }
 }
@@ -25,9 +25,21 @@ abstract class ShuffledJoinOperatorFragment[M <: DataModel[M], T <: DataModel[T]
 
   def newMasterDataModel: M
 
+  def firstMasterOnly: Boolean = false
+
   private val masters: ListBuffer[M] = new ArrayListBuffer[M]()
 
+  private[this] var firstMaster: M = _
+
   override def doAdd(result: IndexedSeq[Iterator[_]]): Unit = {
+    if (firstMasterOnly) {
+      doAddFirstMaster(result)
+    } else {
+      doAddAllMasters(result)
+    }
+  }
+
+  private def doAddAllMasters(result: IndexedSeq[Iterator[_]]): Unit = {
     masters.begin()
     result(0).asInstanceOf[Iterator[M]].foreach { master =>
       if (masters.isExpandRequired()) {
@@ -44,6 +56,27 @@ abstract class ShuffledJoinOperatorFragment[M <: DataModel[M], T <: DataModel[T]
 
     masters.shrink()
   }
+
+  private def doAddFirstMaster(result: IndexedSeq[Iterator[_]]): Unit = {
+    val iter = result(0).asInstanceOf[Iterator[M]]
+    val master =
+      if (iter.hasNext) {
+        if (firstMaster == null) {
+          firstMaster = newMasterDataModel
+        }
+        firstMaster.copyFrom(iter.next())
+        while (iter.hasNext) {
+          iter.next()
+        }
+        firstMaster
+      } else {
+        null.asInstanceOf[M] // scalastyle:ignore
+      }
+
+    result(1).asInstanceOf[Iterator[T]].foreach { tx =>
+      join(master, tx)
+    }
+  }
 }
 
 abstract class ShuffledMasterBranchOperatorFragment[M <: DataModel[M], T <: DataModel[T], E <: Enum[E]]( // scalastyle:ignore
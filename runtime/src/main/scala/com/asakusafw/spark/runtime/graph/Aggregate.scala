@@ -56,47 +56,94 @@ abstract class Aggregate[V: ClassTag, C: ClassTag](
         source.compute(rc).apply(branchKey).map(_().asInstanceOf[RDD[(ShuffleKey, V)]])
     }
 
-    val future = Future.sequence(rdds).zip(zipBroadcasts(rc)).map {
-      case (prevs, broadcasts) =>
+    val streaming = sort.filter { _ =>
+      jobContext.sparkContext.getConf.getBoolean(
+        Props.AggregationStreaming, Props.DefaultAggregationStreaming)
+    }
+
+    val conf = jobContext.sparkContext.getConf
+
+    val coalesced = Future.sequence(rdds).flatMap { prevs =>
+      if (CoalescedShuffleRDD.isEnabled(conf, label)) {
+        withCallSite(rc) {
+          CoalescedShuffleRDD.coalesce(
+            prevs.map(prev => (prev.asInstanceOf[RDD[(ShuffleKey, Any)]], sort)),
+            partitioner)(conf)
+        }.map {
+          case (coalescedPrevs, part) =>
+            (coalescedPrevs.map(_.asInstanceOf[RDD[(ShuffleKey, V)]]), part)
+        }
+      } else {
+        Future.successful((prevs, partitioner))
+      }
+    }
+
+    val future = coalesced.zip(zipBroadcasts(rc)).map {
+      case ((prevs, part), broadcasts) =>
         withCallSite(rc) {
           val aggregated = {
             if (mapSideCombine) {
-              val part = Some(partitioner)
               jobContext.sparkContext.confluent(
                 prevs.map { prev =>
-                  if (prev.partitioner == part) {
+                  if (prev.partitioner == Some(part)) {
                     prev.asInstanceOf[RDD[(ShuffleKey, C)]]
                   } else {
                     prev.mapPartitions({ iter =>
-                      val combiner = aggregation(broadcasts).valueCombiner
-                      combiner.insertAll(
+                      val combiner = aggregation(broadcasts).partialCombiner
+                      val combined = combiner.combine(
                         new ResourceBrokingIterator(
                           rc.hadoopConf.value,
                           iter)(label))
                       val context = TaskContext.get
-                      new InterruptibleIterator(context, combiner.iterator)
+                      new InterruptibleIterator(context, combined)
                     }, preservesPartitioning = true)
                   }
-                }, partitioner, sort)
+                }, part, sort)
                 .mapPartitions({ iter =>
-                  val combiner = aggregation(broadcasts).combinerCombiner
-                  combiner.insertAll(
-                    new ResourceBrokingIterator(
-                      rc.hadoopConf.value,
-                      iter.map { case (k, v) => (k.dropOrdering, v) })(label))
+                  val agg = aggregation(broadcasts)
+                  val buffered = iter.buffered
+                  val records = buffered.map { case (k, v) => (k.dropOrdering, v) }
                   val context = TaskContext.get
-                  new InterruptibleIterator(context, combiner.iterator)
+                  streaming match {
+                    case Some(ordering) =>
+                      new InterruptibleIterator(
+                        context,
+                        new ResourceBrokingIterator(
+                          rc.hadoopConf.value,
+                          agg.sortedCombinerCombine(
+                            records, Aggregate.grouping(ordering, buffered)))(label))
+                    case None =>
+                      val combiner = agg.combinerCombiner
+                      combiner.insertAll(
+                        new ResourceBrokingIterator(
+                          rc.hadoopConf.value,
+                          records)(label))
+                      new InterruptibleIterator(context, combiner.iterator)
+                  }
                 }, preservesPartitioning = true)
             } else {
-              jobContext.sparkContext.confluent(prevs, partitioner, sort)
+              jobContext.sparkContext.confluent(prevs, part, sort)
                 .mapPartitions({ iter =>
-                  val combiner = aggregation(broadcasts).valueCombiner
-                  combiner.insertAll(
-                    new ResourceBrokingIterator(
-                      rc.hadoopConf.value,
-                      iter.map { case (k, v) => (k.dropOrdering, v) })(label))
+                  val agg = aggregation(broadcasts)
+                  val buffered = iter.buffered
+                  val records = buffered.map { case (k, v) => (k.dropOrdering, v) }
                   val context = TaskContext.get
-                  new InterruptibleIterator(context, combiner.iterator)
+                  streaming match {
+                    case Some(ordering) =>
+                      new InterruptibleIterator(
+                        context,
+                        new ResourceBrokingIterator(
+                          rc.hadoopConf.value,
+                          agg.sortedValueCombine(
+                            records, Aggregate.grouping(ordering, buffered)))(label))
+                    case None =>
+                      val combiner = agg.valueCombiner
+                      combiner.insertAll(
+                        new ResourceBrokingIterator(
+                          rc.hadoopConf.value,
+                          records)(label))
+                      new InterruptibleIterator(context, combiner.iterator)
+                  }
                 }, preservesPartitioning = true)
             }
           }
@@ -112,3 +159,17 @@ abstract class Aggregate[V: ClassTag, C: ClassTag](
     branchKeys.map(key => key -> future.map(_(key))).toMap
   }
 }
+
+object Aggregate {
+
+  private def grouping(
+    sort: SortOrdering, iter: BufferedIterator[(ShuffleKey, _)]): GroupOrdering = {
+    // the sort ordering compares groupings first, so equal ordering bytes leave only the grouping
+    val ordering = if (iter.hasNext) iter.head._1.ordering else Array.emptyByteArray
+    new GroupOrdering {
+      override def compare(x: ShuffleKey, y: ShuffleKey): Int = {
+        sort.compare(new ShuffleKey(x.grouping, ordering), new ShuffleKey(y.grouping, ordering))
+      }
+    }
+  }
+}
@@ -27,9 +27,10 @@ import org.apache.spark.broadcast.{ Broadcast => Broadcasted }
 import org.apache.spark.rdd.RDD
 
 import com.asakusafw.runtime.model.DataModel
+import com.asakusafw.spark.runtime.JobContext.FragmentStatistics
 import com.asakusafw.spark.runtime.aggregation.Aggregation
 import com.asakusafw.spark.runtime.fragment.{ Fragment, OutputFragment }
-import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.io.WritableValue
 import com.asakusafw.spark.runtime.rdd._
 
 trait Branching[T] {
@@ -60,29 +61,42 @@ trait Branching[T] {
     broadcasts: Map[BroadcastId, Broadcasted[_]],
     hadoopConf: Broadcasted[Configuration])(
       fragmentBufferSize: Int): Map[BranchKey, () => RDD[(ShuffleKey, _)]] = {
+    val statistics =
+      if (jobContext.sparkContext.getConf.getBoolean(
+        Props.FragmentAdaptive, Props.DefaultFragmentAdaptive)) {
+        Some(jobContext.getOrNewFragmentStatistics(label))
+      } else {
+        None
+      }
     if (branchKeys.size == 1 && partitioners.size == 0) {
       Map(branchKeys.head -> {
         val mapped = rdd.mapPartitions({ iter =>
           new ResourceBrokingIterator(
             hadoopConf.value,
-            iterateFragments(iter, broadcasts)(fragmentBufferSize).map {
+            iterateFragments(iter, broadcasts, statistics)(fragmentBufferSize).map {
               case (Branch(_, k), v) => (k, v)
             })(label)
         }, preservesPartitioning = true)
         () => mapped
       })
     } else {
-      rdd.branch[ShuffleKey, Array[Byte]](
+      // A reused WritableValue is only safe while the shuffle writer serializes each record
+      // as soon as it is emitted. branch sets no aggregator, and WritableValue.isEnabled
+      // requires Kryo with auto-reset, so the bypass or serialized writer is always chosen.
+      val reuse = WritableValue.isEnabled(jobContext.sparkContext.getConf)
+      rdd.branch[ShuffleKey, AnyRef](
         branchKeys,
         { iter =>
           new ResourceBrokingIterator(
             hadoopConf.value, {
-              val fragmentsIter = iterateFragments(iter, broadcasts)(fragmentBufferSize)
+              val fragmentsIter =
+                iterateFragments(iter, broadcasts, statistics)(fragmentBufferSize)
               val aggs = aggregations(broadcasts)
+              val serialize = WritableValue.serializer(reuse)
               if (aggs.nonEmpty) {
-                iterateWithCombiner(fragmentsIter, aggs)
+                iterateWithCombiner(fragmentsIter, aggs, serialize)
               } else {
-                iterateWithoutCombiner(fragmentsIter)
+                iterateWithoutCombiner(fragmentsIter, serialize)
               }
             })(label)
         },
@@ -92,53 +106,60 @@ trait Branching[T] {
             case (branchKey, None) => branchKey -> IdentityPartitioner(rdd.partitions.length)
           },
         keyOrderings = orderings,
+        valueMappers = branchKeys.map { b =>
+          b -> { () =>
+            val deserializer = deserializerFor(b)
+            (v: AnyRef) => deserializer(v.asInstanceOf[Array[Byte]]).asInstanceOf[AnyRef]
+          }
+        }.toMap,
         preservesPartitioning = true)
         .map {
-          case (b, rdd) =>
-            b -> { () =>
-              rdd.mapPartitions({ iter =>
-                val deserializer = deserializerFor(b)
-                iter.map {
-                  case (k, v) => (k, deserializer(v))
-                }
-              }, preservesPartitioning = true)
-            }
+          case (b, rdd) => b -> { () => rdd }
         }
     }
   }
 
   private def iterateWithCombiner(
     iter: Iterator[(Branch[ShuffleKey], _)],
-    aggregations: Map[BranchKey, Aggregation[ShuffleKey, _, _]]): Iterator[(Branch[ShuffleKey], Array[Byte])] = { // scalastyle:ignore
+    aggregations: Map[BranchKey, Aggregation[ShuffleKey, _, _]],
+    serialize: Writable => AnyRef): Iterator[(Branch[ShuffleKey], AnyRef)] = {
     val combiners = aggregations.map {
-      case (b, agg) => b -> agg.valueCombiner()
-    }.toMap[BranchKey, Aggregation.Combiner[ShuffleKey, _, _]]
+      case (b, agg) => b -> agg.partialCombiner()
+    }.toMap[BranchKey, Aggregation.PartialCombiner[ShuffleKey, _, _]]
 
     iter.flatMap {
-      case (Branch(b, k), v) if combiners.contains(b) =>
-        combiners(b).asInstanceOf[Aggregation.Combiner[ShuffleKey, Any, Any]].insert(k, v)
-        Iterator.empty
-      case (bk, v) => Iterator((bk, WritableSerDe.serialize(v.asInstanceOf[Writable])))
+      case (bk @ Branch(b, k), v) if combiners.contains(b) =>
+        val combiner = combiners(b).asInstanceOf[Aggregation.PartialCombiner[ShuffleKey, Any, Any]]
+        if (combiner.isBypassed) {
+          Iterator((bk, serialize(combiner.passThrough(v).asInstanceOf[Writable])))
+        } else {
+          combiner.insert(k, v)
+          Iterator.empty
+        }
+      case (bk, v) => Iterator((bk, serialize(v.asInstanceOf[Writable])))
     } ++ combiners.iterator.flatMap {
       case (b, combiner) =>
         combiner.iterator.map {
-          case (k, v) => (Branch(b, k), WritableSerDe.serialize(v.asInstanceOf[Writable]))
+          case (k, v) => (Branch(b, k), serialize(v.asInstanceOf[Writable]))
         }
     }
   }
 
   private def iterateWithoutCombiner(
-    iter: Iterator[(Branch[ShuffleKey], _)]): Iterator[(Branch[ShuffleKey], Array[Byte])] = {
+    iter: Iterator[(Branch[ShuffleKey], _)],
+    serialize: Writable => AnyRef): Iterator[(Branch[ShuffleKey], AnyRef)] = {
     iter.map {
-      case (bk, value) => (bk, WritableSerDe.serialize(value.asInstanceOf[Writable]))
+      case (bk, value) => (bk, serialize(value.asInstanceOf[Writable]))
     }
   }
 
   private def iterateFragments(
     iter: Iterator[(_, T)],
-    broadcasts: Map[BroadcastId, Broadcasted[_]])(
+    broadcasts: Map[BroadcastId, Broadcasted[_]],
+    statistics: Option[FragmentStatistics])(
       fragmentBufferSize: Int): Iterator[(Branch[ShuffleKey], _)] = {
     val (fragment, outputs) = fragments(broadcasts)(fragmentBufferSize)
+    outputs.values.foreach(_.setStatistics(statistics))
     assert(outputs.keys.toSet == branchKeys,
       s"The branch keys of outputs and branch keys field should be the same: (${
         outputs.keys.mkString("(", ",", ")")
@@ -44,6 +44,8 @@ abstract class CoGroup(
   override protected def doCompute(
     rc: RoundContext)(implicit ec: ExecutionContext): Map[BranchKey, Future[() => RDD[_]]] = {
 
+    val conf = jobContext.sparkContext.getConf
+
     val future =
       Future.sequence(
         prevs.map {
@@ -53,17 +55,40 @@ abstract class CoGroup(
                 source.compute(rc).apply(branchKey).map(_().asInstanceOf[RDD[(ShuffleKey, _)]])
             }
             Future.sequence(rdds).map((_, sort))
-        }).zip(zipBroadcasts(rc)).map {
-          case (prevs, broadcasts) =>
+        }).flatMap { prevs =>
+          if (CoalescedShuffleRDD.isEnabled(conf, label)) {
+            withCallSite(rc) {
+              CoalescedShuffleRDD.coalesce(
+                prevs.flatMap {
+                  case (rdds, sort) =>
+                    rdds.map { rdd =>
+                      (rdd.asInstanceOf[RDD[(ShuffleKey, Any)]], sort.orElse(Option(group)))
+                    }
+                },
+                part)(conf)
+            }.map {
+              case (coalescedRdds, coalescedPart) =>
+                val offsets = prevs.map(_._1.size).scanLeft(0)(_ + _)
+                (prevs.zip(offsets).map {
+                  case ((rdds, sort), offset) =>
+                    (coalescedRdds.slice(offset, offset + rdds.size)
+                      .map(_.asInstanceOf[RDD[(ShuffleKey, _)]]), sort)
+                }, coalescedPart)
+            }
+          } else {
+            Future.successful((prevs, part))
+          }
+        }.zip(zipBroadcasts(rc)).map {
+          case ((prevs, coalescedPart), broadcasts) =>
             withCallSite(rc) {
               val cogrouped = jobContext.sparkContext.smcogroup[ShuffleKey](
                 prevs.map {
                   case (rdds, sort) =>
                     (jobContext.sparkContext.confluent[ShuffleKey, Any](
-                      rdds, part, sort.orElse(Option(group))),
+                      rdds, coalescedPart, sort.orElse(Option(group))),
                       sort)
                 },
-                part,
+                coalescedPart,
                 group)
 
               branch(
@@ -42,7 +42,7 @@ import com.asakusafw.runtime.model.DataModel
 import com.asakusafw.runtime.value.{ StringOption, ValueOption }
 import com.asakusafw.spark.runtime.JobContext.OutputCounter.Direct
 import com.asakusafw.spark.runtime.directio._
-import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.io.{ WritableSerDe, WritableValue }
 import com.asakusafw.spark.runtime.rdd.{ BranchKey, ShuffleKey }
 
 import resource._
@@ -222,11 +222,13 @@ abstract class DirectOutputPrepareGroup[T <: DataModel[T] with Writable: Manifes
 
   override protected def doPrepare(rc: RoundContext, prev: RDD[T]): Unit = {
     withCallSite(rc) {
+      val reuse = WritableValue.isEnabled(jobContext.sparkContext.getConf)
       prev.mapPartitions { iter =>
         val conf = rc.hadoopConf.value
         val stageInfo = StageInfo.deserialize(conf.get(StageInfo.KEY_NAME))
+        val serialize = WritableValue.serializer(reuse)
 
-        iter.map(value => (shuffleKey(value)(stageInfo), WritableSerDe.serialize(value)))
+        iter.map(value => (shuffleKey(value)(stageInfo), serialize(value)))
       }
         .repartitionAndSortWithinPartitions(partitioner)
         .foreachPartition { iter =>
@@ -244,7 +246,7 @@ abstract class DirectOutputPrepareGroup[T <: DataModel[T] with Writable: Manifes
                   var records = 0L
                   while (buff.hasNext && Arrays.equals(buff.head._1.grouping, currentPath)) {
                     records += 1L
-                    WritableSerDe.deserialize(buff.next()._2, data)
+                    WritableSerDe.deserialize(buff.next()._2.asInstanceOf[Array[Byte]], data)
                     output.write(data)
                   }
                   records
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package graph
+
+import org.apache.spark.Partitioner
+import org.apache.spark.broadcast.{ Broadcast => Broadcasted }
+import org.apache.spark.rdd.RDD
+import org.apache.spark.storage.StorageLevel
+
+import com.asakusafw.spark.runtime.fragment.{ GroupIndex, PartitionedGroupIndex }
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+class DistributedBroadcast private (
+  @transient private val rdd: RDD[GroupIndex[Any]],
+  rddId: Int,
+  numPartitions: Int,
+  partitioner: Partitioner)
+  extends Broadcasted[Map[ShuffleKey, Seq[_]]](-(rddId.toLong + 1L)) {
+
+  override protected def getValue(): Map[ShuffleKey, Seq[_]] = {
+    new PartitionedGroupIndex[Any](rddId, numPartitions, partitioner)
+  }
+
+  override protected def doUnpersist(blocking: Boolean): Unit = {
+    if (rdd != null) {
+      rdd.unpersist(blocking)
+    }
+  }
+
+  override protected def doDestroy(blocking: Boolean): Unit = {
+    doUnpersist(blocking)
+  }
+
+  override def toString(): String =
+    s"DistributedBroadcast(rdd=${rddId},partitions=${numPartitions})"
+}
+
+object DistributedBroadcast {
+
+  def apply(
+    rdd: RDD[(ShuffleKey, Seq[_])],
+    partitioner: Partitioner,
+    storageLevel: StorageLevel,
+    bloomFilterThreshold: Int): DistributedBroadcast = {
+    val indices = rdd.mapPartitions({ iter =>
+      Iterator(
+        GroupIndex(iter.asInstanceOf[Iterator[(ShuffleKey, Seq[Any])]], bloomFilterThreshold))
+    }, preservesPartitioning = true)
+    indices.persist(storageLevel)
+    indices.count()
+    new DistributedBroadcast(indices, indices.id, indices.partitions.length, partitioner)
+  }
+}
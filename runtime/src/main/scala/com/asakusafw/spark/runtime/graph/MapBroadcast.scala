@@ -21,7 +21,9 @@ import scala.concurrent.{ ExecutionContext, Future }
 import org.apache.spark.Partitioner
 import org.apache.spark.broadcast.{ Broadcast => Broadcasted }
 import org.apache.spark.rdd.RDD
+import org.apache.spark.storage.StorageLevel
 
+import com.asakusafw.spark.runtime.fragment.GroupIndex
 import com.asakusafw.spark.runtime.rdd._
 
 abstract class MapBroadcast(
@@ -44,17 +46,32 @@ abstract class MapBroadcast(
 
     Future.sequence(rdds).map { prevs =>
       withCallSite(rc) {
-        jobContext.sparkContext.broadcast(
-          jobContext.sparkContext.smcogroup(
-            Seq(
-              (jobContext.sparkContext.confluent[ShuffleKey, Any](
-                prevs, part, sort.orElse(Option(group))),
-                sort)),
+        val cogrouped = jobContext.sparkContext.smcogroup(
+          Seq(
+            (jobContext.sparkContext.confluent[ShuffleKey, Any](
+              prevs, part, sort.orElse(Option(group))),
+              sort)),
+          part,
+          group)
+          .map { case (k, vs) => (k.dropOrdering, vs(0).toVector.asInstanceOf[Seq[_]]) }
+        val conf = jobContext.sparkContext.getConf
+        val bloomFilterThreshold = conf.getInt(
+          Props.BroadcastBloomFilterThreshold, Props.DefaultBroadcastBloomFilterThreshold)
+        if (conf.getBoolean(Props.BroadcastDistributed, Props.DefaultBroadcastDistributed)) {
+          DistributedBroadcast(
+            cogrouped,
             part,
-            group)
-            .map { case (k, vs) => (k.dropOrdering, vs(0).toVector.asInstanceOf[Seq[_]]) }
-            .collect()
-            .toMap)
+            StorageLevel.fromString(
+              conf.get(
+                Props.BroadcastDistributedStorageLevel,
+                Props.DefaultBroadcastDistributedStorageLevel)),
+            bloomFilterThreshold)
+        } else {
+          jobContext.sparkContext.broadcast[Map[ShuffleKey, Seq[_]]](
+            GroupIndex(
+              cogrouped.collect().iterator.asInstanceOf[Iterator[(ShuffleKey, Seq[Any])]],
+              bloomFilterThreshold))
+        }
       }
     }
   }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.io
+
+import java.lang.{ Double => JDouble, Float => JFloat }
+import java.util.Arrays
+
+import com.asakusafw.runtime.value._
+
+class NormalizedKeySerDe {
+
+  private[this] var buffer: Array[Byte] = new Array[Byte](256) // scalastyle:ignore
+
+  private[this] var length: Int = 0
+
+  def serialize(values: Seq[ValueOption[_]]): Array[Byte] = {
+    serialize(values, 0L)
+  }
+
+  def serialize(values: Seq[ValueOption[_]], descendings: Long): Array[Byte] = {
+    length = 0
+    var i = 0
+    val iter = values.iterator
+    while (iter.hasNext) {
+      val start = length
+      write(iter.next())
+      if ((descendings & (1L << i)) != 0L) {
+        complement(start)
+      }
+      i += 1
+    }
+    Arrays.copyOf(buffer, length)
+  }
+
+  private def write(value: ValueOption[_]): Unit = {
+    if (value.isNull) {
+      writeByte(0)
+    } else {
+      writeByte(1)
+      value match {
+        case v: BooleanOption =>
+          writeByte(if (v.get) 1 else 0)
+        case v: ByteOption =>
+          writeByte(v.get ^ 0x80) // scalastyle:ignore
+        case v: ShortOption =>
+          writeShort(v.get ^ 0x8000) // scalastyle:ignore
+        case v: IntOption =>
+          writeInt(v.get ^ Int.MinValue)
+        case v: LongOption =>
+          writeLong(v.get ^ Long.MinValue)
+        case v: FloatOption =>
+          val bits = JFloat.floatToIntBits(v.get)
+          writeInt(bits ^ ((bits >> 31) | Int.MinValue)) // scalastyle:ignore
+        case v: DoubleOption =>
+          val bits = JDouble.doubleToLongBits(v.get)
+          writeLong(bits ^ ((bits >> 63) | Long.MinValue)) // scalastyle:ignore
+        case v: DateOption =>
+          writeInt(v.get.getElapsedDays ^ Int.MinValue)
+        case v: DateTimeOption =>
+          writeLong(v.get.getElapsedSeconds ^ Long.MinValue)
+        case v: StringOption =>
+          val text = v.get
+          writeEscaped(text.getBytes, text.getLength)
+        case _ =>
+          throw new IllegalArgumentException(
+            s"Unsupported normalized key property: ${value.getClass.getName}")
+      }
+    }
+  }
+
+  private def writeByte(b: Int): Unit = {
+    ensure(1)
+    buffer(length) = b.toByte
+    length += 1
+  }
+
+  private def writeShort(s: Int): Unit = {
+    ensure(2)
+    buffer(length) = (s >>> 8).toByte // scalastyle:ignore
+    buffer(length + 1) = s.toByte
+    length += 2
+  }
+
+  private def writeInt(i: Int): Unit = {
+    ensure(4) // scalastyle:ignore
+    var shift = 24 // scalastyle:ignore
+    while (shift >= 0) {
+      buffer(length) = (i >>> shift).toByte
+      length += 1
+      shift -= 8 // scalastyle:ignore
+    }
+  }
+
+  private def writeLong(l: Long): Unit = {
+    ensure(8) // scalastyle:ignore
+    var shift = 56 // scalastyle:ignore
+    while (shift >= 0) {
+      buffer(length) = (l >>> shift).toByte
+      length += 1
+      shift -= 8 // scalastyle:ignore
+    }
+  }
+
+  private def writeEscaped(bytes: Array[Byte], len: Int): Unit = {
+    ensure(len * 2 + 2)
+    var i = 0
+    while (i < len) {
+      val b = bytes(i)
+      buffer(length) = b
+      length += 1
+      if (b == 0) {
+        buffer(length) = -1
+        length += 1
+      }
+      i += 1
+    }
+    buffer(length) = 0
+    buffer(length + 1) = 0
+    length += 2
+  }
+
+  private def complement(start: Int): Unit = {
+    var i = start
+    while (i < length) {
+      buffer(i) = (~buffer(i)).toByte
+      i += 1
+    }
+  }
+
+  private def ensure(size: Int): Unit = {
+    if (length + size > buffer.length) {
+      buffer = Arrays.copyOf(buffer, math.max(buffer.length * 2, length + size))
+    }
+  }
+}
+
+object NormalizedKeySerDe {
+
+  val MaxOrderingProperties: Int = 64
+
+  private[this] val serdes = new ThreadLocal[NormalizedKeySerDe]() {
+    override def initialValue: NormalizedKeySerDe = new NormalizedKeySerDe()
+  }
+
+  def serialize(values: Seq[ValueOption[_]]): Array[Byte] = {
+    serdes.get.serialize(values)
+  }
+
+  def serialize(values: Seq[ValueOption[_]], descendings: Long): Array[Byte] = {
+    serdes.get.serialize(values, descendings)
+  }
+}
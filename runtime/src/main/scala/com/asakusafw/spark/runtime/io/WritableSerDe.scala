@@ -15,9 +15,10 @@
  */
 package com.asakusafw.spark.runtime.io
 
+import java.io.{ DataInput, DataOutput }
 import java.util.Arrays
 
-import org.apache.hadoop.io.Writable
+import org.apache.hadoop.io.{ Writable, WritableUtils }
 
 import com.asakusafw.runtime.io.util.DataBuffer
 
@@ -30,9 +31,25 @@ class WritableSerDe {
   }
 
   def serialize(values: Seq[Writable]): Array[Byte] = {
+    fill(values)
+    Arrays.copyOfRange(buffer.getData, buffer.getReadPosition, buffer.getReadLimit)
+  }
+
+  def serializeTo(value: Writable, out: DataOutput): Int = {
+    serializeTo(Seq(value), out)
+  }
+
+  def serializeTo(values: Seq[Writable], out: DataOutput): Int = {
+    val length = fill(values)
+    WritableUtils.writeVInt(out, length)
+    out.write(buffer.getData, buffer.getReadPosition, length)
+    length
+  }
+
+  private def fill(values: Seq[Writable]): Int = {
     buffer.reset(0, 0)
     values.foreach(_.write(buffer))
-    Arrays.copyOfRange(buffer.getData, buffer.getReadPosition, buffer.getReadLimit)
+    buffer.getReadLimit - buffer.getReadPosition
   }
 
   def deserialize(bytes: Array[Byte], value: Writable): Unit = {
@@ -51,6 +68,12 @@ class WritableSerDe {
     buffer.reset(bytes, off, bytes.length - off)
     values.foreach(_.readFields(buffer))
   }
+
+  def deserializeFrom(in: DataInput): Array[Byte] = {
+    val bytes = new Array[Byte](WritableUtils.readVInt(in))
+    in.readFully(bytes)
+    bytes
+  }
 }
 
 object WritableSerDe {
@@ -67,6 +90,14 @@ object WritableSerDe {
     serdes.get.serialize(values)
   }
 
+  def serializeTo(value: Writable, out: DataOutput): Int = {
+    serdes.get.serializeTo(value, out)
+  }
+
+  def serializeTo(values: Seq[Writable], out: DataOutput): Int = {
+    serdes.get.serializeTo(values, out)
+  }
+
   def deserialize(bytes: Array[Byte], value: Writable): Unit = {
     serdes.get.deserialize(bytes, value)
   }
@@ -82,4 +113,8 @@ object WritableSerDe {
   def deserialize(bytes: Array[Byte], off: Int, values: Seq[Writable]): Unit = {
     serdes.get.deserialize(bytes, off, values)
   }
+
+  def deserializeFrom(in: DataInput): Array[Byte] = {
+    serdes.get.deserializeFrom(in)
+  }
 }
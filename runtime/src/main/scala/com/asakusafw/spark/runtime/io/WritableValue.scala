@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.io
+
+import org.apache.hadoop.io.Writable
+import org.apache.spark.SparkConf
+import org.apache.spark.serializer.KryoSerializer
+
+import com.asakusafw.spark.runtime.Props
+
+class WritableValue(var value: Writable) {
+
+  def this() = this(null)
+}
+
+object WritableValue {
+
+  def isEnabled(conf: SparkConf): Boolean = {
+    conf.getBoolean(Props.ShuffleReuseValue, Props.DefaultShuffleReuseValue) &&
+      conf.get("spark.serializer", "") == classOf[KryoSerializer].getName &&
+      conf.getBoolean("spark.kryo.autoReset", true)
+  }
+
+  def serializer(enabled: Boolean): Writable => AnyRef = {
+    if (enabled) {
+      val value = new WritableValue()
+      v => {
+        value.value = v
+        value
+      }
+    } else {
+      v => WritableSerDe.serialize(v)
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.orderings
+
+import java.lang.{ Long => JLong }
+import java.nio.ByteOrder
+
+import org.apache.spark.unsafe.Platform
+
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+class NormalizedGroupingOrdering extends Ordering[ShuffleKey] {
+
+  override def compare(x: ShuffleKey, y: ShuffleKey): Int = {
+    val xp = x.prefix
+    val yp = y.prefix
+    if (xp != yp) {
+      JLong.compareUnsigned(xp, yp)
+    } else {
+      NormalizedOrdering.compareBytes(x.grouping, y.grouping)
+    }
+  }
+}
+
+class NormalizedSortOrdering extends NormalizedGroupingOrdering {
+
+  override def compare(x: ShuffleKey, y: ShuffleKey): Int = {
+    val cmp = super.compare(x, y)
+    if (cmp != 0) {
+      cmp
+    } else {
+      NormalizedOrdering.compareBytes(x.ordering, y.ordering)
+    }
+  }
+}
+
+object NormalizedOrdering {
+
+  private[this] val LittleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+
+  def compareBytes(x: Array[Byte], y: Array[Byte]): Int = {
+    val len = math.min(x.length, y.length)
+    val words = len & ~7 // scalastyle:ignore
+    var i = 0
+    var cmp = 0
+    while (cmp == 0 && i < words) {
+      val xw = Platform.getLong(x, Platform.BYTE_ARRAY_OFFSET + i)
+      val yw = Platform.getLong(y, Platform.BYTE_ARRAY_OFFSET + i)
+      if (xw != yw) {
+        cmp = if (LittleEndian) {
+          JLong.compareUnsigned(JLong.reverseBytes(xw), JLong.reverseBytes(yw))
+        } else {
+          JLong.compareUnsigned(xw, yw)
+        }
+      }
+      i += 8 // scalastyle:ignore
+    }
+    while (cmp == 0 && i < len) {
+      cmp = (x(i) & 0xff) - (y(i) & 0xff) // scalastyle:ignore
+      i += 1
+    }
+    if (cmp != 0) {
+      cmp
+    } else {
+      x.length - y.length
+    }
+  }
+}
@@ -35,6 +35,59 @@ package object runtime {
     val FragmentBufferSize = s"${AsakusafwConfPrefix}.fragment.bufferSize"
 
     val DefaultFragmentBufferSize = -1
+
+    val FragmentOffHeap = s"${AsakusafwConfPrefix}.fragment.offHeap"
+    val FragmentOffHeapPageSize = s"${AsakusafwConfPrefix}.fragment.offHeap.pageSize"
+
+    val DefaultFragmentOffHeap = false
+    val DefaultFragmentOffHeapPageSize = 1024 * 1024
+
+    val FragmentAdaptive = s"${AsakusafwConfPrefix}.fragment.adaptive"
+    val FragmentAdaptiveSamples = s"${AsakusafwConfPrefix}.fragment.adaptive.samples"
+    val FragmentAdaptiveThreshold = s"${AsakusafwConfPrefix}.fragment.adaptive.threshold"
+
+    val DefaultFragmentAdaptive = false
+    val DefaultFragmentAdaptiveSamples = 1000
+    val DefaultFragmentAdaptiveThreshold = 64L * 1024 * 1024
+
+    val CoGroupSpillThreshold = s"${AsakusafwConfPrefix}.cogroup.spill.threshold"
+
+    val DefaultCoGroupSpillThreshold = 10000
+
+    val BroadcastDistributed = s"${AsakusafwConfPrefix}.broadcast.distributed"
+    val BroadcastDistributedStorageLevel =
+      s"${AsakusafwConfPrefix}.broadcast.distributed.storageLevel"
+
+    val DefaultBroadcastDistributed = false
+    val DefaultBroadcastDistributedStorageLevel = "MEMORY_AND_DISK_SER_2"
+
+    val BroadcastBloomFilterThreshold = s"${AsakusafwConfPrefix}.broadcast.bloomFilter.threshold"
+
+    val DefaultBroadcastBloomFilterThreshold = 65536
+
+    val BroadcastIndexRetention = s"${AsakusafwConfPrefix}.broadcast.index.retention"
+
+    val DefaultBroadcastIndexRetention = "5s"
+
+    val AggregationPartialSampleSize = s"${AsakusafwConfPrefix}.aggregation.partial.sampleSize"
+    val AggregationPartialBypassRatio = s"${AsakusafwConfPrefix}.aggregation.partial.bypassRatio"
+
+    val DefaultAggregationPartialSampleSize = 10000
+    val DefaultAggregationPartialBypassRatio = 0.9
+
+    val AggregationStreaming = s"${AsakusafwConfPrefix}.aggregation.streaming"
+
+    val DefaultAggregationStreaming = true
+
+    val CoalesceEnabled = s"${AsakusafwConfPrefix}.coalesce.enabled"
+    val CoalesceTargetSize = s"${AsakusafwConfPrefix}.coalesce.targetSize"
+
+    val DefaultCoalesceEnabled = false
+    val DefaultCoalesceTargetSize = "64m"
+
+    val ShuffleReuseValue = s"${AsakusafwConfPrefix}.shuffle.reuseValue"
+
+    val DefaultShuffleReuseValue = false
   }
 
   val HadoopConfPrefix = "spark.hadoop"
@@ -20,9 +20,11 @@ import scala.reflect.ClassTag
 import org.apache.spark._
 import org.apache.spark.rdd._
 
+import org.apache.spark.backdoor._
 import org.apache.spark.rdd.backdoor._
+import org.apache.spark.util.collection.backdoor._
 
-import com.asakusafw.spark.runtime.orderings.NoOrdering
+import com.asakusafw.spark.runtime.serializer.BranchShuffleSerializer
 
 case class BranchKey(id: Int)
 case class Branch[K](branchKey: BranchKey, actualKey: K)
@@ -34,6 +36,7 @@ class BranchRDDFunctions[T](val self: RDD[T]) extends AnyVal {
     f: Iterator[T] => Iterator[(Branch[K], U)],
     partitioners: Map[BranchKey, Partitioner] = Map.empty[BranchKey, Partitioner],
     keyOrderings: Map[BranchKey, Ordering[K]] = Map.empty[BranchKey, Ordering[K]],
+    valueMappers: Map[BranchKey, () => U => U] = Map.empty[BranchKey, () => U => U],
     preservesPartitioning: Boolean = false): Map[BranchKey, RDD[(K, U)]] = {
 
     val prepared = self.mapPartitions(f, preservesPartitioning)
@@ -41,25 +44,19 @@ class BranchRDDFunctions[T](val self: RDD[T]) extends AnyVal {
     val branchPartitioner = new BranchPartitioner(
       branchKeys,
       partitioners.withDefaultValue(IdentityPartitioner(prepared.partitions.size)))
-    val shuffled = prepared.withScope {
-      new ShuffledRDD[Branch[K], U, U](prepared, branchPartitioner)
-    }
-    if (keyOrderings.nonEmpty) {
-      shuffled.setKeyOrdering(
-        new BranchKeyOrdering(keyOrderings.withDefaultValue(new NoOrdering[K])))
-    }
-    val branched = shuffled.map { case (Branch(_, k), u) => (k, u) }
+    val dependency = new ShuffleDependency[Branch[K], U, U](
+      prepared,
+      branchPartitioner,
+      new BranchShuffleSerializer(SparkEnv.get.serializer))
     branchKeys.map { branch =>
-      branch -> branched.withScope {
-        new BranchedRDD[(K, U)](
-          branched,
+      branch -> prepared.withScope {
+        new BranchShuffledRDD[K, U](
+          dependency,
+          branchPartitioner.offsetOf(branch),
+          branchPartitioner.numPartitionsOf(branch),
+          keyOrderings.get(branch),
           partitioners.get(branch).orElse(prepared.partitioner),
-          {
-            val offset = branchPartitioner.offsetOf(branch)
-            val numPartitions = branchPartitioner.numPartitionsOf(branch)
-
-            i => offset <= i && i < offset + numPartitions
-          })
+          valueMappers.get(branch).map(self.context.clean(_))): RDD[(K, U)]
       }
     }.toMap
   }
@@ -87,19 +84,43 @@ private class BranchPartitioner(
   def numPartitionsOf(branch: BranchKey): Int = partitioners(branch).numPartitions
 }
 
-private class BranchKeyOrdering[K](orderings: Map[BranchKey, Ordering[K]])
-  extends Ordering[Branch[K]] {
+private class BranchShuffledRDD[K, U](
+  dependency: ShuffleDependency[Branch[K], U, U],
+  val offset: Int,
+  numPartitions: Int,
+  ordering: Option[Ordering[K]],
+  part: Option[Partitioner],
+  valueMapper: Option[() => U => U] = None)
+  extends RDD[(K, U)](dependency.rdd.context, Seq(dependency)) {
 
-  override def compare(left: Branch[K], right: Branch[K]): Int = {
-    orderings(left.branchKey).compare(left.actualKey, right.actualKey)
+  override val partitioner = part
+
+  override protected def getPartitions: Array[Partition] = {
+    Array.tabulate[Partition](numPartitions)(new BranchShuffledPartition(_))
   }
-}
 
-private class BranchedRDD[T: ClassTag](
-  prev: RDD[T],
-  part: Option[Partitioner],
-  partitionFilterFunc: Int => Boolean)
-  extends PartitionPruningRDD[T](prev, partitionFilterFunc) {
+  override def compute(split: Partition, context: TaskContext): Iterator[(K, U)] = {
+    read(split.index, split.index + 1, ordering, context)
+  }
 
-  override val partitioner = part
+  def read(
+    start: Int,
+    end: Int,
+    ordering: Option[Ordering[K]],
+    context: TaskContext): Iterator[(K, U)] = {
+    val dep = dependencies.head.asInstanceOf[ShuffleDependency[K, U, U]]
+    val iter = SparkEnv.get.readShuffle(dep, offset + start, offset + end, context)
+    val sorted = (ordering match {
+      case Some(ord) => sort(iter, ord, dep.serializer, context)
+      case None => iter
+    }).asInstanceOf[Iterator[(K, U)]]
+    valueMapper match {
+      case Some(newMapper) =>
+        val mapper = newMapper()
+        sorted.map { case (k, v) => (k, mapper(v)) }
+      case None => sorted
+    }
+  }
 }
+
+private class BranchShuffledPartition(override val index: Int) extends Partition
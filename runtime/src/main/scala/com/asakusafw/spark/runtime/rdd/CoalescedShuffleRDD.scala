@@ -0,0 +1,210 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package rdd
+
+import java.util.Arrays
+
+import scala.annotation.tailrec
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.reflect.ClassTag
+
+import org.apache.spark.{
+  NarrowDependency,
+  Partition,
+  Partitioner,
+  ShuffleDependency,
+  SparkConf,
+  SparkEnv,
+  TaskContext
+}
+import org.apache.spark.rdd.{ RDD, ShuffledRDD }
+import org.slf4j.LoggerFactory
+
+import org.apache.spark.backdoor._
+import org.apache.spark.util.collection.backdoor._
+
+import com.asakusafw.spark.runtime.util.Iterators
+
+class CoalescedShuffleRDD[K, V](
+  @transient private var prev: RDD[(K, V)],
+  starts: Array[Int],
+  ordering: Option[Ordering[K]],
+  part: CoalescedPartitioner)
+  extends RDD[(K, V)](
+    prev.context,
+    Seq(new NarrowDependency(prev) {
+      override def getParents(partitionId: Int): Seq[Int] = {
+        starts(partitionId) until starts(partitionId + 1)
+      }
+    })) {
+
+  override val partitioner: Option[Partitioner] = Some(part)
+
+  override protected def getPartitions: Array[Partition] = {
+    Array.tabulate[Partition](starts.length - 1) { i =>
+      new CoalescedShufflePartition(i, (starts(i) until starts(i + 1)).map(prev.partitions))
+    }
+  }
+
+  override def compute(split: Partition, context: TaskContext): Iterator[(K, V)] = {
+    val start = starts(split.index)
+    val end = starts(split.index + 1)
+    dependencies.head.rdd match {
+      case branched: BranchShuffledRDD[K, V] @unchecked =>
+        branched.read(start, end, ordering, context)
+      case shuffled: ShuffledRDD[K, _, V] @unchecked =>
+        val dep = shuffled.dependencies.head.asInstanceOf[ShuffleDependency[K, _, V]]
+        val iter = SparkEnv.get.readShuffle(dep, start, end, context)
+        (ordering match {
+          case Some(ord) if dep.keyOrdering.isEmpty => sort(iter, ord, dep.serializer, context)
+          case _ => iter
+        }).asInstanceOf[Iterator[(K, V)]]
+      case parent: RDD[(K, V)] @unchecked =>
+        val partitions = split.asInstanceOf[CoalescedShufflePartition].partitions
+        ordering match {
+          case Some(ord) =>
+            Iterators.merge(partitions.map(p => parent.iterator(p, context)))(ord)
+          case None =>
+            partitions.iterator.flatMap(p => parent.iterator(p, context))
+        }
+    }
+  }
+
+  override def clearDependencies(): Unit = {
+    super.clearDependencies()
+    prev = null // scalastyle:ignore
+  }
+}
+
+private class CoalescedShufflePartition(
+  override val index: Int,
+  val partitions: Seq[Partition]) extends Partition
+
+class CoalescedPartitioner(
+  val parent: Partitioner,
+  private val starts: Array[Int]) extends Partitioner {
+
+  override val numPartitions: Int = starts.length - 1
+
+  override def getPartition(key: Any): Int = {
+    val i = Arrays.binarySearch(starts, parent.getPartition(key))
+    if (i >= 0) i else -i - 2
+  }
+
+  override def equals(other: Any): Boolean = {
+    other match {
+      case that: CoalescedPartitioner =>
+        parent == that.parent && Arrays.equals(starts, that.starts)
+      case _ => false
+    }
+  }
+
+  override def hashCode: Int = 31 * parent.hashCode + Arrays.hashCode(starts) // scalastyle:ignore
+}
+
+object CoalescedShuffleRDD {
+
+  private val Logger = LoggerFactory.getLogger(getClass)
+
+  def isEnabled(conf: SparkConf, label: String): Boolean = {
+    conf.getOption(s"${Props.CoalesceEnabled}.${label}")
+      .map(_.toBoolean)
+      .getOrElse(conf.getBoolean(Props.CoalesceEnabled, Props.DefaultCoalesceEnabled))
+  }
+
+  def coalesce[K](
+    rdds: Seq[(RDD[(K, Any)], Option[Ordering[K]])],
+    part: Partitioner)(
+      conf: SparkConf)(
+        implicit ec: ExecutionContext): Future[(Seq[RDD[(K, Any)]], Partitioner)] = {
+    val sources = rdds.map {
+      case (rdd, _) =>
+        if (rdd.partitioner == Some(part)) {
+          val traced = rdd.partitions.indices.map(trace(rdd, _))
+          if (traced.forall(_.isDefined)) Some(traced.map(_.get)) else None
+        } else {
+          None
+        }
+    }
+    if (rdds.isEmpty || sources.exists(_.isEmpty)) {
+      Future.successful((rdds.map(_._1), part))
+    } else {
+      val targetSize =
+        conf.getSizeAsBytes(Props.CoalesceTargetSize, Props.DefaultCoalesceTargetSize)
+      val sc = rdds.head._1.sparkContext
+      val deps = sources.flatMap(_.get).map(_._1).groupBy(_.shuffleId).mapValues(_.head)
+      Future.sequence(deps.toSeq.map {
+        case (shuffleId, dep) =>
+          sc.submitMapStage(dep).map(stats => shuffleId -> stats.bytesByPartitionId)
+      }).map { stats =>
+        val bytes = stats.toMap
+        val sizes = Array.tabulate(part.numPartitions) { i =>
+          sources.map(_.get(i)).map {
+            case (dep, index) => bytes(dep.shuffleId)(index)
+          }.sum
+        }
+        val starts = groups(sizes, targetSize)
+        if (starts.length - 1 == part.numPartitions) {
+          (rdds.map(_._1), part)
+        } else {
+          if (Logger.isInfoEnabled) {
+            Logger.info(
+              s"Coalescing ${part.numPartitions} partitions into ${starts.length - 1} " +
+                s"(${sizes.sum} bytes, target: ${targetSize} bytes)")
+          }
+          val coalesced = new CoalescedPartitioner(part, starts)
+          (rdds.map {
+            case (rdd, ordering) =>
+              new CoalescedShuffleRDD(rdd, starts, ordering, coalesced): RDD[(K, Any)]
+          }, coalesced)
+        }
+      }
+    }
+  }
+
+  private def groups(sizes: Array[Long], targetSize: Long): Array[Int] = {
+    val starts = Array.newBuilder[Int]
+    starts += 0
+    var current = 0L
+    var i = 0
+    while (i < sizes.length) {
+      if (i > 0 && current > 0L && current + sizes(i) > targetSize) {
+        starts += i
+        current = 0L
+      }
+      current += sizes(i)
+      i += 1
+    }
+    starts += sizes.length
+    starts.result()
+  }
+
+  @tailrec
+  private def trace(rdd: RDD[_], index: Int): Option[(ShuffleDependency[_, _, _], Int)] = {
+    (rdd, rdd.dependencies) match {
+      case (branched: BranchShuffledRDD[_, _], Seq(dep: ShuffleDependency[_, _, _])) =>
+        Some((dep, branched.offset + index))
+      case (_, Seq(dep: ShuffleDependency[_, _, _])) => Some((dep, index))
+      case (_, Seq(dep: NarrowDependency[_])) =>
+        dep.getParents(index) match {
+          case Seq(parent) => trace(dep.rdd, parent)
+          case _ => None
+        }
+      case _ => None
+    }
+  }
+}
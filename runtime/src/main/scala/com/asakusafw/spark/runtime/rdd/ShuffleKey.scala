@@ -28,12 +28,29 @@ class ShuffleKey(
 
   def this() = this(Array.emptyByteArray)
 
-  override def hashCode: Int = Arrays.hashCode(grouping)
+  private[spark] def this(grouping: Array[Byte], ordering: Array[Byte], hash: Int) = {
+    this(grouping, ordering)
+    this.hash = hash
+  }
+
+  private[this] var hash: Int = 0
+
+  val prefix: Long = ShuffleKey.prefix(grouping)
+
+  override def hashCode: Int = {
+    var h = hash
+    if (h == 0) {
+      h = Arrays.hashCode(grouping)
+      hash = h
+    }
+    h
+  }
 
   override def equals(obj: Any): Boolean = {
     obj match {
       case that: ShuffleKey =>
         (that canEqual this) &&
+          this.hashCode == that.hashCode &&
           Arrays.equals(this.grouping, that.grouping) &&
           Arrays.equals(this.ordering, that.ordering)
       case _ => false
@@ -44,10 +61,21 @@ class ShuffleKey(
     obj.isInstanceOf[ShuffleKey]
   }
 
-  def dropOrdering: ShuffleKey = new ShuffleKey(grouping)
+  def dropOrdering: ShuffleKey = new ShuffleKey(grouping, Array.emptyByteArray, hashCode)
 }
 
 object ShuffleKey {
 
   val empty: ShuffleKey = new ShuffleKey()
+
+  private def prefix(bytes: Array[Byte]): Long = {
+    val len = math.min(bytes.length, 8) // scalastyle:ignore
+    var p = 0L
+    var i = 0
+    while (i < len) {
+      p |= (bytes(i) & 0xffL) << (56 - i * 8) // scalastyle:ignore
+      i += 1
+    }
+    p
+  }
 }
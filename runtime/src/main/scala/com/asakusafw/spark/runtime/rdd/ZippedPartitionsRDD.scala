@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.rdd
+
+import scala.reflect.ClassTag
+
+import org.apache.spark.{ OneToOneDependency, Partition, SparkContext, TaskContext }
+import org.apache.spark.rdd.RDD
+
+class ZippedPartitionsRDD[T: ClassTag, U: ClassTag](
+  sc: SparkContext,
+  @transient private var rdds: Seq[RDD[T]],
+  f: Seq[Iterator[T]] => Iterator[U],
+  preservesPartitioning: Boolean = false)
+  extends RDD[U](sc, rdds.map(rdd => new OneToOneDependency(rdd))) {
+
+  override val partitioner = if (preservesPartitioning) rdds.head.partitioner else None
+
+  override protected def getPartitions: Array[Partition] = {
+    val numPartitions = rdds.head.partitions.length
+    assert(rdds.forall(_.partitions.length == numPartitions),
+      s"Can't zip RDDs with unequal numbers of partitions: ${
+        rdds.map(_.partitions.length).mkString("(", ",", ")")
+      }")
+    Array.tabulate[Partition](numPartitions) { i =>
+      new ZippedPartition(i, rdds.map(_.partitions(i)))
+    }
+  }
+
+  override protected def getPreferredLocations(split: Partition): Seq[String] = {
+    val partitions = split.asInstanceOf[ZippedPartition].partitions
+    val locations = rdds.zip(partitions).map {
+      case (rdd, partition) => rdd.preferredLocations(partition)
+    }
+    val exact = locations.reduce(_.intersect(_))
+    if (exact.nonEmpty) exact else locations.flatten.distinct
+  }
+
+  override def compute(split: Partition, context: TaskContext): Iterator[U] = {
+    val partitions = split.asInstanceOf[ZippedPartition].partitions
+    f(dependencies.zip(partitions).map {
+      case (dep, partition) => dep.rdd.asInstanceOf[RDD[T]].iterator(partition, context)
+    })
+  }
+
+  override def clearDependencies(): Unit = {
+    super.clearDependencies()
+    rdds = null // scalastyle:ignore
+  }
+}
+
+private class ZippedPartition(
+  override val index: Int,
+  val partitions: Seq[Partition]) extends Partition
@@ -50,13 +50,11 @@ package object rdd {
       if (rdds.nonEmpty) {
         ordering match {
           case Some(ord) =>
-            rdds.map(_.shuffle(part, ordering)).reduceLeft { (left, right) =>
-              left.zipPartitions(right, preservesPartitioning = true) {
-                case (leftIter, rightIter) if leftIter.hasNext && rightIter.hasNext =>
-                  leftIter.sortmerge(rightIter)(ord)
-                case (leftIter, _) if leftIter.hasNext => leftIter
-                case (_, rightIter) => rightIter
-              }
+            rdds.map(_.shuffle(part, ordering)) match {
+              case Seq(rdd) => rdd
+              case shuffled =>
+                new ZippedPartitionsRDD[(K, V), (K, V)](
+                  sc, shuffled, merge(_)(ord), preservesPartitioning = true)
             }
           case None =>
             rdds.map(_.shuffle(part, ordering)).reduceLeft { (left, right) =>
@@ -79,12 +77,7 @@ package object rdd {
           case (rdd, o) => rdd.shuffle(part, o.orElse(ord))
         }
 
-        val grouped = rdds.map(shuffle).map(
-          _.mapPartitions(
-            _.asInstanceOf[Iterator[(K, Any)]].groupByKey()(grouping),
-            preservesPartitioning = true))
-
-        sequence(grouped)(grouping, implicitly)
+        sequence(rdds.map(shuffle).map(_.asInstanceOf[RDD[(K, Any)]]))(grouping, implicitly)
       } else {
         sc.emptyRDD
       }
@@ -92,53 +85,11 @@ package object rdd {
   }
 
   private def sequence[K: Ordering: ClassTag](
-    rdds: Seq[RDD[(K, Iterator[_])]]): RDD[(K, IndexedSeq[Iterator[_]])] = {
+    rdds: Seq[RDD[(K, Any)]]): RDD[(K, IndexedSeq[Iterator[_]])] = {
     assert(rdds.size > 0)
 
-    val n = rdds.size
-    (rdds.head.map {
-      case (key, iter) =>
-        val arr = Array.fill[Iterator[_]](n)(Iterator.empty)
-        arr(0) = iter
-        key -> arr
-    } /: rdds.tail.zipWithIndex) {
-      case (acc, (rdd, i)) =>
-        acc.zipPartitions(rdd, preservesPartitioning = true) { (leftIter, rightIter) =>
-          val ord = implicitly[Ordering[K]]
-          val leftBuff = leftIter.buffered
-          val rightBuff = rightIter.buffered
-
-          new Iterator[(K, Array[Iterator[_]])] {
-
-            override def hasNext: Boolean = leftBuff.hasNext || rightBuff.hasNext
-
-            override def next(): (K, Array[Iterator[_]]) = {
-              (leftBuff.hasNext, rightBuff.hasNext) match {
-                case (true, true) =>
-                  val key = ord.min(leftBuff.head._1, rightBuff.head._1)
-                  val arr = if (ord.equiv(key, leftBuff.head._1)) {
-                    leftBuff.next()._2
-                  } else {
-                    Array.fill[Iterator[_]](n)(Iterator.empty)
-                  }
-                  if (ord.equiv(key, rightBuff.head._1)) {
-                    arr(i + 1) = rightBuff.next()._2
-                  }
-                  key -> arr
-                case (true, false) =>
-                  leftBuff.next()
-                case (false, true) =>
-                  val (k, v) = rightBuff.next()
-                  val arr = Array.fill[Iterator[_]](n)(Iterator.empty)
-                  arr(i + 1) = v
-                  k -> arr
-                case _ =>
-                  throw new AssertionError()
-              }
-            }
-          }
-        }
-    }
-      .mapValues(iters => iters)
+    val ord = implicitly[Ordering[K]]
+    new ZippedPartitionsRDD[(K, Any), (K, IndexedSeq[Iterator[_]])](
+      rdds.head.sparkContext, rdds, cogroup(_)(ord), preservesPartitioning = true)
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.serializer
+
+import java.io.{ InputStream, OutputStream }
+import java.nio.ByteBuffer
+
+import scala.reflect.ClassTag
+
+import org.apache.spark.serializer.{
+  DeserializationStream,
+  SerializationStream,
+  Serializer,
+  SerializerInstance
+}
+
+import org.apache.spark.serializer.backdoor._
+
+import com.asakusafw.spark.runtime.rdd.Branch
+
+class BranchShuffleSerializer(underlying: Serializer) extends SerializerProxy(underlying) {
+
+  override def newInstance(): SerializerInstance = {
+    new BranchShuffleSerializerInstance(underlying.newInstance())
+  }
+}
+
+private class BranchShuffleSerializerInstance(underlying: SerializerInstance)
+  extends SerializerInstance {
+
+  override def serialize[T: ClassTag](t: T): ByteBuffer = underlying.serialize(t)
+
+  override def deserialize[T: ClassTag](bytes: ByteBuffer): T = underlying.deserialize(bytes)
+
+  override def deserialize[T: ClassTag](bytes: ByteBuffer, loader: ClassLoader): T = {
+    underlying.deserialize(bytes, loader)
+  }
+
+  override def serializeStream(s: OutputStream): SerializationStream = {
+    new BranchShuffleSerializationStream(underlying.serializeStream(s))
+  }
+
+  override def deserializeStream(s: InputStream): DeserializationStream = {
+    underlying.deserializeStream(s)
+  }
+}
+
+private class BranchShuffleSerializationStream(underlying: SerializationStream)
+  extends SerializationStream {
+
+  override def writeObject[T: ClassTag](t: T): SerializationStream = {
+    underlying.writeObject(t)
+    this
+  }
+
+  override def writeKey[T: ClassTag](key: Any): SerializationStream = {
+    key match {
+      case Branch(_, actualKey) => underlying.writeKey[Any](actualKey)
+      case _ => underlying.writeKey[T](key)
+    }
+    this
+  }
+
+  override def writeValue[T: ClassTag](value: Any): SerializationStream = {
+    underlying.writeValue[T](value)
+    this
+  }
+
+  override def flush(): Unit = underlying.flush()
+
+  override def close(): Unit = underlying.close()
+}
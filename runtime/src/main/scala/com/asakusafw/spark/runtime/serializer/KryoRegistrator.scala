@@ -20,8 +20,11 @@ import org.apache.spark.serializer.{ KryoRegistrator => SparkKryoRegistrator }
 import org.slf4j.LoggerFactory
 
 import com.esotericsoftware.kryo.Kryo
+import com.esotericsoftware.kryo.serializers.FieldSerializer
 
 import com.asakusafw.runtime.value._
+import com.asakusafw.spark.runtime.fragment.{ GroupIndex, PartitionedGroupIndex }
+import com.asakusafw.spark.runtime.io.WritableValue
 import com.asakusafw.spark.runtime.rdd.{ Branch, ShuffleKey }
 
 class KryoRegistrator extends SparkKryoRegistrator {
@@ -38,6 +41,12 @@ class KryoRegistrator extends SparkKryoRegistrator {
 
     kryo.register(classOf[Branch[_]], BranchSerializer)
     kryo.register(classOf[ShuffleKey], ShuffleKeySerializer)
+    kryo.register(classOf[WritableValue], new WritableValueSerializer())
+    kryo.register(
+      classOf[GroupIndex[_]], new FieldSerializer[GroupIndex[_]](kryo, classOf[GroupIndex[_]]))
+    kryo.register(
+      classOf[PartitionedGroupIndex[_]],
+      new FieldSerializer[PartitionedGroupIndex[_]](kryo, classOf[PartitionedGroupIndex[_]]))
 
     kryo.register(classOf[BooleanOption], WritableSerializer.BooleanOptionSerializer)
     kryo.register(classOf[ByteOption], WritableSerializer.ByteOptionSerializer)
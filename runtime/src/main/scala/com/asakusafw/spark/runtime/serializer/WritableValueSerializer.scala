@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.serializer
+
+import java.io.{ DataInput, DataInputStream, DataOutput, DataOutputStream, OutputStream }
+
+import com.esotericsoftware.kryo._
+import com.esotericsoftware.kryo.io._
+
+import com.asakusafw.spark.runtime.io.{ WritableSerDe, WritableValue }
+
+class WritableValueSerializer extends Serializer[AnyRef](false, false) {
+
+  private[this] val out = new OutputAdapter()
+
+  private[this] val in = new InputAdapter()
+
+  override def write(kryo: Kryo, output: Output, obj: AnyRef): Unit = {
+    out.output = output
+    WritableSerDe.serializeTo(obj.asInstanceOf[WritableValue].value, out)
+    out.output = null // scalastyle:ignore
+  }
+
+  override def read(kryo: Kryo, input: Input, t: Class[AnyRef]): AnyRef = {
+    in.input = input
+    val bytes = WritableSerDe.deserializeFrom(in)
+    in.input = null // scalastyle:ignore
+    bytes
+  }
+}
+
+private class OutputAdapter extends OutputStream with DataOutput {
+
+  var output: Output = _
+
+  private[this] lazy val utf = new DataOutputStream(this)
+
+  override def write(b: Int): Unit = output.write(b)
+
+  override def write(b: Array[Byte]): Unit = output.write(b)
+
+  override def write(b: Array[Byte], off: Int, len: Int): Unit = output.write(b, off, len)
+
+  override def writeBoolean(v: Boolean): Unit = output.writeBoolean(v)
+
+  override def writeByte(v: Int): Unit = output.writeByte(v)
+
+  override def writeShort(v: Int): Unit = output.writeShort(v)
+
+  override def writeChar(v: Int): Unit = output.writeChar(v.toChar)
+
+  override def writeInt(v: Int): Unit = output.writeInt(v)
+
+  override def writeLong(v: Long): Unit = output.writeLong(v)
+
+  override def writeFloat(v: Float): Unit = output.writeFloat(v)
+
+  override def writeDouble(v: Double): Unit = output.writeDouble(v)
+
+  override def writeBytes(s: String): Unit = {
+    var i = 0
+    while (i < s.length) {
+      output.writeByte(s.charAt(i))
+      i += 1
+    }
+  }
+
+  override def writeChars(s: String): Unit = {
+    var i = 0
+    while (i < s.length) {
+      output.writeChar(s.charAt(i))
+      i += 1
+    }
+  }
+
+  override def writeUTF(s: String): Unit = utf.writeUTF(s)
+}
+
+private class InputAdapter extends DataInput {
+
+  var input: Input = _
+
+  override def readFully(b: Array[Byte]): Unit = input.readBytes(b)
+
+  override def readFully(b: Array[Byte], off: Int, len: Int): Unit = input.readBytes(b, off, len)
+
+  override def skipBytes(n: Int): Int = input.skip(n.toLong).toInt
+
+  override def readBoolean(): Boolean = input.readBoolean()
+
+  override def readByte(): Byte = input.readByte()
+
+  override def readUnsignedByte(): Int = input.readByteUnsigned()
+
+  override def readShort(): Short = input.readShort()
+
+  override def readUnsignedShort(): Int = input.readShortUnsigned()
+
+  override def readChar(): Char = input.readChar()
+
+  override def readInt(): Int = input.readInt()
+
+  override def readLong(): Long = input.readLong()
+
+  override def readFloat(): Float = input.readFloat()
+
+  override def readDouble(): Double = input.readDouble()
+
+  override def readLine(): String = {
+    val line = new StringBuilder()
+    var c = input.read()
+    if (c < 0) {
+      null // scalastyle:ignore
+    } else {
+      while (c >= 0 && c != '\n' && c != '\r') {
+        line.append(c.toChar)
+        c = input.read()
+      }
+      if (c == '\r') {
+        val next = input.read()
+        if (next >= 0 && next != '\n') {
+          input.setPosition(input.position - 1)
+        }
+      }
+      line.toString
+    }
+  }
+
+  override def readUTF(): String = DataInputStream.readUTF(this)
+}
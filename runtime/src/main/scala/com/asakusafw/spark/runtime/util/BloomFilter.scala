@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.util
+
+class BloomFilter(expectedEntries: Int) extends Serializable {
+
+  import BloomFilter._ // scalastyle:ignore
+
+  private[this] val numBlocks: Int =
+    math.max((expectedEntries.toLong * BitsPerEntry / BlockBits + 1L).min(Int.MaxValue).toInt, 1)
+
+  private[this] val bits = new Array[Long](numBlocks * BlockWords)
+
+  def put(hash: Int): Unit = {
+    val m = mix(hash)
+    val base = block(m)
+    var i = 0
+    while (i < NumHashes) {
+      val pos = bit(m, i)
+      bits(base + (pos >>> 6)) |= 1L << pos // scalastyle:ignore
+      i += 1
+    }
+  }
+
+  def mightContain(hash: Int): Boolean = {
+    val m = mix(hash)
+    val base = block(m)
+    var i = 0
+    var contains = true
+    while (contains && i < NumHashes) {
+      val pos = bit(m, i)
+      contains = (bits(base + (pos >>> 6)) & (1L << pos)) != 0L // scalastyle:ignore
+      i += 1
+    }
+    contains
+  }
+
+  private def block(m: Long): Int = {
+    (((m >>> 32) * numBlocks) >>> 32).toInt * BlockWords // scalastyle:ignore
+  }
+
+  private def bit(m: Long, i: Int): Int = {
+    ((m >>> (i * 9)) & (BlockBits - 1)).toInt // scalastyle:ignore
+  }
+}
+
+object BloomFilter {
+
+  private val BlockWords = 8
+
+  private val BlockBits = BlockWords * 64
+
+  private val BitsPerEntry = 10
+
+  private val NumHashes = 3
+
+  private def mix(hash: Int): Long = {
+    var h = hash.toLong
+    h ^= h >>> 33 // scalastyle:ignore
+    h *= 0xff51afd7ed558ccdL // scalastyle:ignore
+    h ^= h >>> 33 // scalastyle:ignore
+    h *= 0xc4ceb9fe1a85ec53L // scalastyle:ignore
+    h ^= h >>> 33 // scalastyle:ignore
+    h
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.util
+
+import java.lang.{ Double => JDouble }
+
+import com.asakusafw.runtime.value._
+
+object ColumnOps {
+
+  def setZero(columns: Array[Long], index: Int): Unit = {
+    columns(index) = 0L
+  }
+
+  def inc(columns: Array[Long], index: Int): Unit = {
+    columns(index) += 1L
+  }
+
+  def copyWithName(
+    columns: Array[Long], index: Int,
+    operand: ByteOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = operand.get
+  }
+
+  def copyWithName(
+    columns: Array[Long], index: Int,
+    operand: ShortOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = operand.get
+  }
+
+  def copyWithName(
+    columns: Array[Long], index: Int,
+    operand: IntOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = operand.get
+  }
+
+  def copyWithName(
+    columns: Array[Long], index: Int,
+    operand: LongOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = operand.get
+  }
+
+  def copyWithName(
+    columns: Array[Long], index: Int,
+    operand: FloatOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = toBits(operand.get)
+  }
+
+  def copyWithName(
+    columns: Array[Long], index: Int,
+    operand: DoubleOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = toBits(operand.get)
+  }
+
+  def addWithName(
+    columns: Array[Long], index: Int,
+    operand: ByteOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) += operand.get
+  }
+
+  def addWithName(
+    columns: Array[Long], index: Int,
+    operand: ShortOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) += operand.get
+  }
+
+  def addWithName(
+    columns: Array[Long], index: Int,
+    operand: IntOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) += operand.get
+  }
+
+  def addWithName(
+    columns: Array[Long], index: Int,
+    operand: LongOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) += operand.get
+  }
+
+  def addWithName(
+    columns: Array[Long], index: Int,
+    operand: FloatOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = toBits(fromBits(columns(index)) + operand.get)
+  }
+
+  def addWithName(
+    columns: Array[Long], index: Int,
+    operand: DoubleOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = toBits(fromBits(columns(index)) + operand.get)
+  }
+
+  def maxWithName(
+    columns: Array[Long], index: Int,
+    operand: ByteOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxWithName(
+    columns: Array[Long], index: Int,
+    operand: ShortOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxWithName(
+    columns: Array[Long], index: Int,
+    operand: IntOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxWithName(
+    columns: Array[Long], index: Int,
+    operand: LongOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxWithName(
+    columns: Array[Long], index: Int,
+    operand: FloatOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    maxDouble(columns, index, operand.get)
+  }
+
+  def maxWithName(
+    columns: Array[Long], index: Int,
+    operand: DoubleOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    maxDouble(columns, index, operand.get)
+  }
+
+  def minWithName(
+    columns: Array[Long], index: Int,
+    operand: ByteOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minWithName(
+    columns: Array[Long], index: Int,
+    operand: ShortOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minWithName(
+    columns: Array[Long], index: Int,
+    operand: IntOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minWithName(
+    columns: Array[Long], index: Int,
+    operand: LongOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minWithName(
+    columns: Array[Long], index: Int,
+    operand: FloatOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    minDouble(columns, index, operand.get)
+  }
+
+  def minWithName(
+    columns: Array[Long], index: Int,
+    operand: DoubleOption, name: String, record: AnyRef): Unit = {
+    checkNull(operand, name, record)
+    minDouble(columns, index, operand.get)
+  }
+
+  def copyUnsafe(columns: Array[Long], index: Int, operand: ByteOption): Unit = {
+    columns(index) = operand.get
+  }
+
+  def copyUnsafe(columns: Array[Long], index: Int, operand: ShortOption): Unit = {
+    columns(index) = operand.get
+  }
+
+  def copyUnsafe(columns: Array[Long], index: Int, operand: IntOption): Unit = {
+    columns(index) = operand.get
+  }
+
+  def copyUnsafe(columns: Array[Long], index: Int, operand: LongOption): Unit = {
+    columns(index) = operand.get
+  }
+
+  def copyUnsafe(columns: Array[Long], index: Int, operand: FloatOption): Unit = {
+    columns(index) = toBits(operand.get)
+  }
+
+  def copyUnsafe(columns: Array[Long], index: Int, operand: DoubleOption): Unit = {
+    columns(index) = toBits(operand.get)
+  }
+
+  def addUnsafe(columns: Array[Long], index: Int, operand: LongOption): Unit = {
+    columns(index) += operand.get
+  }
+
+  def addUnsafe(columns: Array[Long], index: Int, operand: DoubleOption): Unit = {
+    columns(index) = toBits(fromBits(columns(index)) + operand.get)
+  }
+
+  def maxUnsafe(columns: Array[Long], index: Int, operand: ByteOption): Unit = {
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxUnsafe(columns: Array[Long], index: Int, operand: ShortOption): Unit = {
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxUnsafe(columns: Array[Long], index: Int, operand: IntOption): Unit = {
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxUnsafe(columns: Array[Long], index: Int, operand: LongOption): Unit = {
+    columns(index) = math.max(columns(index), operand.get)
+  }
+
+  def maxUnsafe(columns: Array[Long], index: Int, operand: FloatOption): Unit = {
+    maxDouble(columns, index, operand.get)
+  }
+
+  def maxUnsafe(columns: Array[Long], index: Int, operand: DoubleOption): Unit = {
+    maxDouble(columns, index, operand.get)
+  }
+
+  def minUnsafe(columns: Array[Long], index: Int, operand: ByteOption): Unit = {
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minUnsafe(columns: Array[Long], index: Int, operand: ShortOption): Unit = {
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minUnsafe(columns: Array[Long], index: Int, operand: IntOption): Unit = {
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minUnsafe(columns: Array[Long], index: Int, operand: LongOption): Unit = {
+    columns(index) = math.min(columns(index), operand.get)
+  }
+
+  def minUnsafe(columns: Array[Long], index: Int, operand: FloatOption): Unit = {
+    minDouble(columns, index, operand.get)
+  }
+
+  def minUnsafe(columns: Array[Long], index: Int, operand: DoubleOption): Unit = {
+    minDouble(columns, index, operand.get)
+  }
+
+  def copyTo(columns: Array[Long], index: Int, to: ByteOption): Unit = {
+    to.modify(columns(index).toByte)
+  }
+
+  def copyTo(columns: Array[Long], index: Int, to: ShortOption): Unit = {
+    to.modify(columns(index).toShort)
+  }
+
+  def copyTo(columns: Array[Long], index: Int, to: IntOption): Unit = {
+    to.modify(columns(index).toInt)
+  }
+
+  def copyTo(columns: Array[Long], index: Int, to: LongOption): Unit = {
+    to.modify(columns(index))
+  }
+
+  def copyTo(columns: Array[Long], index: Int, to: FloatOption): Unit = {
+    to.modify(fromBits(columns(index)).toFloat)
+  }
+
+  def copyTo(columns: Array[Long], index: Int, to: DoubleOption): Unit = {
+    to.modify(fromBits(columns(index)))
+  }
+
+  private[this] def maxDouble(columns: Array[Long], index: Int, operand: Double): Unit = {
+    if (JDouble.compare(fromBits(columns(index)), operand) < 0) {
+      columns(index) = toBits(operand)
+    }
+  }
+
+  private[this] def minDouble(columns: Array[Long], index: Int, operand: Double): Unit = {
+    if (JDouble.compare(fromBits(columns(index)), operand) > 0) {
+      columns(index) = toBits(operand)
+    }
+  }
+
+  private[this] def toBits(value: Double): Long = JDouble.doubleToRawLongBits(value)
+
+  private[this] def fromBits(bits: Long): Double = JDouble.longBitsToDouble(bits)
+
+  private[this] def checkNull(operand: ValueOption[_], name: String, record: AnyRef): Unit = {
+    if (operand.isNull) {
+      throw new NullPointerException(
+        s"${name} must not be null: ${record}")
+    }
+  }
+}
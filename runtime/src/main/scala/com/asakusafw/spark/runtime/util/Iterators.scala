@@ -31,62 +31,290 @@ object Iterators {
 
   def groupByKey[K: Ordering, V](
     iter: Iterator[(K, V)]): Iterator[(K, Iterator[V])] = {
-    val ord = implicitly[Ordering[K]]
-    val buff = iter.buffered
+    val cursor = new GroupCursor(iter)
 
     new Iterator[(K, Iterator[V])] {
 
-      var cur: Iterator[V] = Iterator.empty
+      override def hasNext: Boolean = cursor.hasNextGroup
 
-      override def hasNext: Boolean = buff.hasNext
+      override def next(): (K, Iterator[V]) = (cursor.nextGroup(), cursor)
+    }
+  }
 
-      override def next(): (K, Iterator[V]) = {
-        while (cur.hasNext) cur.next()
+  final class GroupCursor[K, V](iter: Iterator[(K, V)])(implicit ord: Ordering[K])
+    extends Iterator[V] {
 
-        val key = buff.head._1
+    private[this] var current: (K, V) = _
 
-        cur = new Iterator[V] {
+    private[this] var fetched: Boolean = false
 
-          override def hasNext: Boolean = buff.hasNext && ord.equiv(key, buff.head._1)
+    private[this] var started: Boolean = false
 
-          override def next(): V = buff.next()._2
-        }
+    private[this] var inGroup: Boolean = false
+
+    private[this] var key: K = _
+
+    def hasNextGroup: Boolean = {
+      while (hasNext) {
+        next()
+      }
+      current != null // scalastyle:ignore
+    }
+
+    def headKey: K = current._1
+
+    def nextGroup(): K = {
+      if (!hasNextGroup) {
+        throw new NoSuchElementException()
+      }
+      key = current._1
+      started = true
+      inGroup = true
+      key
+    }
 
-        key -> cur
+    override def hasNext: Boolean = {
+      fetch()
+      inGroup
+    }
+
+    override def next(): V = {
+      if (!hasNext) {
+        throw new NoSuchElementException()
+      }
+      fetched = false
+      current._2
+    }
+
+    private def fetch(): Unit = {
+      if (!fetched) {
+        fetched = true
+        if (iter.hasNext) {
+          current = iter.next()
+          inGroup = started && ord.equiv(key, current._1)
+        } else {
+          current = null // scalastyle:ignore
+          inGroup = false
+        }
       }
     }
   }
 
-  def sortmerge[K: Ordering, V](
-    left: Iterator[(K, V)], right: Iterator[(K, V)]): Iterator[(K, V)] = {
-    val ord = implicitly[Ordering[K]]
-    val leftIterBuff = left.buffered
-    val rightIterBuff = right.buffered
+  def merge[K: Ordering, V](iters: Seq[Iterator[(K, V)]]): Iterator[(K, V)] = {
+    iters.size match {
+      case 0 => Iterator.empty
+      case 1 => iters.head
+      case _ => new MergeIterator(iters.toArray)
+    }
+  }
 
-    new Iterator[(K, V)] {
+  private class MergeIterator[K, V](
+    iters: Array[Iterator[(K, V)]])(
+      implicit ord: Ordering[K]) extends Iterator[(K, V)] {
 
-      var curKey: K = ord.min(leftIterBuff.head._1, rightIterBuff.head._1)
+    private[this] val k = iters.length
 
-      override def hasNext: Boolean = leftIterBuff.hasNext || rightIterBuff.hasNext
+    private[this] val heads = new Array[(K, V)](k)
 
-      override def next(): (K, V) = {
-        if (leftIterBuff.hasNext && ord.equiv(curKey, leftIterBuff.head._1)) {
-          leftIterBuff.next()
-        } else if (rightIterBuff.hasNext && ord.equiv(curKey, rightIterBuff.head._1)) {
-          rightIterBuff.next()
+    private[this] val exhausted = new Array[Boolean](k)
+
+    private[this] val losers = new Array[Int](k)
+
+    private[this] var last: Int = -1
+
+    (0 until k).foreach(fetch)
+
+    losers(0) = build(1)
+
+    override def hasNext: Boolean = {
+      settle()
+      !exhausted(losers(0))
+    }
+
+    override def next(): (K, V) = {
+      settle()
+      val winner = losers(0)
+      if (exhausted(winner)) {
+        throw new NoSuchElementException()
+      }
+      last = winner
+      heads(winner)
+    }
+
+    private def settle(): Unit = {
+      if (last >= 0) {
+        fetch(last)
+        replay(last)
+        last = -1
+      }
+    }
+
+    private def fetch(i: Int): Unit = {
+      if (iters(i).hasNext) {
+        heads(i) = iters(i).next()
+      } else {
+        heads(i) = null // scalastyle:ignore
+        exhausted(i) = true
+      }
+    }
+
+    private def beats(a: Int, b: Int): Boolean = {
+      if (exhausted(a)) {
+        false
+      } else if (exhausted(b)) {
+        true
+      } else {
+        val cmp = ord.compare(heads(a)._1, heads(b)._1)
+        cmp < 0 || (cmp == 0 && a < b)
+      }
+    }
+
+    private def build(node: Int): Int = {
+      if (node >= k) {
+        node - k
+      } else {
+        val left = build(node * 2)
+        val right = build(node * 2 + 1)
+        if (beats(left, right)) {
+          losers(node) = right
+          left
         } else {
-          if (leftIterBuff.hasNext && rightIterBuff.hasNext) {
-            curKey = ord.min(leftIterBuff.head._1, rightIterBuff.head._1)
-            next()
-          } else if (leftIterBuff.hasNext) {
-            curKey = leftIterBuff.head._1
-            leftIterBuff.next()
+          losers(node) = left
+          right
+        }
+      }
+    }
+
+    private def replay(i: Int): Unit = {
+      var winner = i
+      var node = (i + k) / 2
+      while (node > 0) {
+        if (beats(losers(node), winner)) {
+          val loser = winner
+          winner = losers(node)
+          losers(node) = loser
+        }
+        node /= 2
+      }
+      losers(0) = winner
+    }
+  }
+
+  def cogroup[K: Ordering](
+    iters: Seq[Iterator[(K, _)]]): Iterator[(K, IndexedSeq[Iterator[_]])] = {
+    val cursor = new CoGroupCursor(iters)
+
+    new Iterator[(K, IndexedSeq[Iterator[_]])] {
+
+      override def hasNext: Boolean = cursor.hasNextGroup
+
+      override def next(): (K, IndexedSeq[Iterator[_]]) = (cursor.nextGroup(), cursor.groups)
+    }
+  }
+
+  final class CoGroupCursor[K](iters: Seq[Iterator[(K, _)]])(implicit ord: Ordering[K]) {
+
+    private[this] val cursors = iters.map(iter => new GroupCursor[K, Any](iter)).toArray
+
+    private[this] val n = cursors.length
+
+    private[this] val heap = new Array[Int](n)
+
+    private[this] var size: Int = 0
+
+    private[this] val current = Array.fill[Iterator[_]](n)(Iterator.empty)
+
+    val groups: IndexedSeq[Iterator[_]] = current
+
+    private[this] val pending = new Array[Int](n)
+
+    private[this] var numPending: Int = 0
+
+    (0 until n).foreach(fetch)
+
+    def hasNextGroup: Boolean = {
+      settle()
+      size > 0
+    }
+
+    def nextGroup(): K = {
+      settle()
+      if (size == 0) {
+        throw new NoSuchElementException()
+      }
+      val key = cursors(heap(0)).headKey
+      while (size > 0 && ord.equiv(cursors(heap(0)).headKey, key)) {
+        val i = pop()
+        cursors(i).nextGroup()
+        current(i) = cursors(i)
+        pending(numPending) = i
+        numPending += 1
+      }
+      key
+    }
+
+    private def settle(): Unit = {
+      var j = 0
+      while (j < numPending) {
+        val i = pending(j)
+        current(i) = Iterator.empty
+        fetch(i)
+        j += 1
+      }
+      numPending = 0
+    }
+
+    private def fetch(i: Int): Unit = {
+      if (cursors(i).hasNextGroup) {
+        push(i)
+      }
+    }
+
+    private def less(a: Int, b: Int): Boolean = {
+      val cmp = ord.compare(cursors(a).headKey, cursors(b).headKey)
+      cmp < 0 || (cmp == 0 && a < b)
+    }
+
+    private def push(i: Int): Unit = {
+      var pos = size
+      size += 1
+      while (pos > 0 && less(i, heap((pos - 1) / 2))) {
+        heap(pos) = heap((pos - 1) / 2)
+        pos = (pos - 1) / 2
+      }
+      heap(pos) = i
+    }
+
+    private def pop(): Int = {
+      val top = heap(0)
+      size -= 1
+      if (size > 0) {
+        val last = heap(size)
+        var pos = 0
+        var done = false
+        while (!done) {
+          val left = pos * 2 + 1
+          if (left >= size) {
+            done = true
           } else {
-            curKey = rightIterBuff.head._1
-            rightIterBuff.next()
+            val right = left + 1
+            val child = if (right < size && less(heap(right), heap(left))) right else left
+            if (less(heap(child), last)) {
+              heap(pos) = heap(child)
+              pos = child
+            } else {
+              done = true
+            }
           }
         }
+        heap(pos) = last
       }
+      top
     }
   }
+
+  def sortmerge[K: Ordering, V](
+    left: Iterator[(K, V)], right: Iterator[(K, V)]): Iterator[(K, V)] = {
+    new MergeIterator(Array(left, right))
+  }
 }
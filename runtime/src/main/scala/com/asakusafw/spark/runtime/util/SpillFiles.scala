@@ -0,0 +1,31 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime.util
+
+import java.io.File
+
+import org.apache.spark.SparkEnv
+
+import org.apache.spark.backdoor._
+
+object SpillFiles {
+
+  def create(prefix: String): File = {
+    Option(SparkEnv.get)
+      .map(_.createTempLocalBlock()._2)
+      .getOrElse(File.createTempFile(prefix, ".bin"))
+  }
+}
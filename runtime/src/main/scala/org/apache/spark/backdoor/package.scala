@@ -15,6 +15,10 @@
  */
 package org.apache.spark
 
+import java.io.{ File, InputStream, OutputStream }
+
+import org.apache.spark.memory.TaskMemoryManager
+import org.apache.spark.storage.BlockId
 import org.apache.spark.util.CallSite
 
 package object backdoor {
@@ -32,4 +36,44 @@ package object backdoor {
 
     def setCallSite(callSite: CallSite): Unit = sc.setCallSite(callSite)
   }
+
+  implicit class TaskContextBackdoor(val tc: TaskContext) extends AnyVal {
+
+    def taskMemoryManager: TaskMemoryManager = tc.taskMemoryManager()
+  }
+
+  implicit class SparkEnvBackdoor(val env: SparkEnv) extends AnyVal {
+
+    def getBlockValues(blockId: BlockId): Option[Iterator[Any]] = {
+      env.blockManager.get[Any](blockId).map(_.data)
+    }
+
+    def createTempLocalBlock(): (BlockId, File) = {
+      env.blockManager.diskBlockManager.createTempLocalBlock()
+    }
+
+    def wrapStream(blockId: BlockId, s: OutputStream): OutputStream = {
+      env.serializerManager.wrapStream(blockId, s)
+    }
+
+    def wrapStream(blockId: BlockId, s: InputStream): InputStream = {
+      env.serializerManager.wrapStream(blockId, s)
+    }
+
+    def readShuffle[K, C](
+      dependency: ShuffleDependency[K, _, C],
+      partition: Int,
+      context: TaskContext): Iterator[Product2[K, C]] = {
+      readShuffle(dependency, partition, partition + 1, context)
+    }
+
+    def readShuffle[K, C](
+      dependency: ShuffleDependency[K, _, C],
+      startPartition: Int,
+      endPartition: Int,
+      context: TaskContext): Iterator[Product2[K, C]] = {
+      env.shuffleManager.getReader[K, C](
+        dependency.shuffleHandle, startPartition, endPartition, context).read()
+    }
+  }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.spark.util.collection
+
+import org.apache.spark.TaskContext
+import org.apache.spark.serializer.Serializer
+import org.apache.spark.util.{ CompletionIterator, TaskCompletionListener }
+
+package object backdoor {
+
+  def sort[K, V](
+    iter: Iterator[Product2[K, V]],
+    ordering: Ordering[K],
+    serializer: Serializer,
+    context: TaskContext): Iterator[Product2[K, V]] = {
+    val sorter =
+      new ExternalSorter[K, V, V](context, ordering = Some(ordering), serializer = serializer)
+    sorter.insertAll(iter)
+    context.taskMetrics().incMemoryBytesSpilled(sorter.memoryBytesSpilled)
+    context.taskMetrics().incDiskBytesSpilled(sorter.diskBytesSpilled)
+    context.taskMetrics().incPeakExecutionMemory(sorter.peakMemoryUsedBytes)
+    context.addTaskCompletionListener(new TaskCompletionListener {
+      override def onTaskCompletion(context: TaskContext): Unit = sorter.stop()
+    })
+    CompletionIterator[Product2[K, V], Iterator[Product2[K, V]]](sorter.iterator, sorter.stop())
+  }
+}
@@ -20,6 +20,10 @@ import org.junit.runner.RunWith
 import org.scalatest.FlatSpec
 import org.scalatest.junit.JUnitRunner
 
+import org.apache.spark.{ SparkConf, TaskContext }
+
+import com.asakusafw.runtime.value.LongOption
+
 @RunWith(classOf[JUnitRunner])
 class AggregationSpecTest extends AggregationSpec
 
@@ -43,6 +47,94 @@ class AggregationSpec extends FlatSpec {
     assert(combined(1)._2 === (0 until 100 by 2))
   }
 
+  it should "combine values in place" in {
+    val aggregation = new TestAggregation(inPlace = true)
+    val combiner = aggregation.valueCombiner()
+    (0 until 100).foreach { i =>
+      combiner.insert(i % 2 == 0, i)
+    }
+    val combined = combiner.toSeq.sortBy(_._1)
+    assert(combined.size === 2)
+    assert(combined(0)._1 === false)
+    assert(combined(0)._2 === (1 until 100 by 2))
+    assert(combined(1)._1 === true)
+    assert(combined(1)._2 === (0 until 100 by 2))
+  }
+
+  it should "combine values in place with many keys" in {
+    val aggregation = new CountAggregation()
+    val combiner = aggregation.valueCombiner()
+    (0 until 10000).foreach { i =>
+      combiner.insert(i % 1000, 1L)
+    }
+    val combined = combiner.toSeq.sortBy(_._1)
+    assert(combined.map(_._1) === (0 until 1000))
+    assert(combined.forall(_._2.get === 10L))
+  }
+
+  it should "combine values in place in columns" in {
+    val aggregation = new ColumnarCountAggregation()
+    val combiner = aggregation.valueCombiner()
+    (0 until 10000).foreach { i =>
+      combiner.insert(i % 1000, 1L)
+    }
+    val combined = combiner.toSeq.sortBy(_._1)
+    assert(combined.map(_._1) === (0 until 1000))
+    assert(combined.forall(_._2.get === 10L))
+  }
+
+  it should "combine combiners in place in columns" in {
+    val aggregation = new ColumnarCountAggregation()
+    val combiner = aggregation.combinerCombiner()
+    (0 until 10000).foreach { i =>
+      combiner.insert(i % 1000, new LongOption(2L))
+    }
+    val combined = combiner.toSeq.sortBy(_._1)
+    assert(combined.map(_._1) === (0 until 1000))
+    assert(combined.forall(_._2.get === 20L))
+  }
+
+  it should "bypass partial aggregation for unique keys" in {
+    val aggregation = new CountAggregation()
+    val combiner = aggregation.partialCombiner()
+    val combined = combiner.combine((0 until 20000).iterator.map(i => (i, 1L))).toSeq
+    assert(combiner.isBypassed)
+    assert(combined.map(_._1).sorted === (0 until 20000))
+    assert(combined.forall(_._2.get === 1L))
+  }
+
+  it should "not bypass partial aggregation for duplicated keys" in {
+    val aggregation = new CountAggregation()
+    val combiner = aggregation.partialCombiner()
+    val combined = combiner.combine((0 until 20000).iterator.map(i => (i % 100, 1L))).toSeq
+    assert(!combiner.isBypassed)
+    assert(combined.map(_._1).sorted === (0 until 100))
+    assert(combined.forall(_._2.get === 200L))
+  }
+
+  it should "combine sorted values" in {
+    val aggregation = new TestAggregation()
+    val combined = aggregation.sortedValueCombine(
+      (0 until 100).iterator.map(i => (i >= 50, i)), Ordering.Boolean).toSeq
+    assert(combined.size === 2)
+    assert(combined(0)._1 === false)
+    assert(combined(0)._2 === (0 until 50))
+    assert(combined(1)._1 === true)
+    assert(combined(1)._2 === (50 until 100))
+  }
+
+  it should "combine sorted values of interleaved equivalent keys once for each key" in {
+    val aggregation = new TestAggregation()
+    val combined = aggregation.sortedValueCombine(
+      (0 until 100).iterator.map(i => (i % 2 == 0, i)), Ordering.by((_: Boolean) => 0)).toSeq
+    assert(combined.size === 2)
+    val sorted = combined.sortBy(_._1)
+    assert(sorted(0)._1 === false)
+    assert(sorted(0)._2 === (1 until 100 by 2))
+    assert(sorted(1)._1 === true)
+    assert(sorted(1)._2 === (0 until 100 by 2))
+  }
+
   it should "combine combiners" in {
     val aggregation = new TestAggregation()
     val combiner = aggregation.combinerCombiner()
@@ -58,9 +150,76 @@ class AggregationSpec extends FlatSpec {
   }
 }
 
+@RunWith(classOf[JUnitRunner])
+class SpillingAggregationSpecTest extends SpillingAggregationSpec
+
+class SpillingAggregationSpec extends FlatSpec with SparkForAll {
+
+  import AggregationSpec._
+
+  behavior of classOf[Aggregation[_, _, _]].getSimpleName
+
+  override def configure(conf: SparkConf): SparkConf = {
+    conf.set("spark.shuffle.spill.initialMemoryThreshold", "1k")
+    conf.set("spark.shuffle.spill.numElementsForceSpillThreshold", 100.toString)
+  }
+
+  for {
+    (name, numKeys) <- Seq("few keys" -> 10, "many keys" -> 1000, "sparse keys" -> 5000)
+    (layout, columnar) <- Seq("" -> false, " in columns" -> true)
+  } {
+    it should s"combine values in place with spills for ${name}${layout}" in {
+      val (spilled, unspilled, diskBytesSpilled) =
+        sc.parallelize(Seq(0), 1).mapPartitions { _ =>
+          val values = (0 until 20000).map(i => ((i * 7919) % numKeys, i.toLong))
+
+          val spilling =
+            (if (columnar) new SpillableColumnarCountAggregation()
+            else new SpillableCountAggregation()).valueCombiner()
+          values.foreach { case (k, v) => spilling.insert(k, v) }
+          val spilled = spilling.iterator.map { case (k, v) => (k, v.get) }.toVector
+
+          val inMemory = new CountAggregation().valueCombiner()
+          values.foreach { case (k, v) => inMemory.insert(k, v) }
+          val unspilled = inMemory.iterator.map { case (k, v) => (k, v.get) }.toVector
+
+          Iterator((spilled, unspilled, TaskContext.get.taskMetrics.diskBytesSpilled))
+        }.collect().head
+
+      assert(spilled.map(_._1).toSet.size === spilled.size)
+      assert(spilled.sortBy(_._1) === unspilled.sortBy(_._1))
+      assert(spilled.size === numKeys)
+      if (numKeys > 100) {
+        assert(diskBytesSpilled > 0L)
+      }
+    }
+  }
+
+  it should "combine combiners in place with spills" in {
+    val (spilled, unspilled) =
+      sc.parallelize(Seq(0), 1).mapPartitions { _ =>
+        val values = (0 until 20000).map(i => (i % 1000, new LongOption(i.toLong)))
+
+        val spilling = new SpillableCountAggregation().combinerCombiner()
+        values.foreach { case (k, v) => spilling.insert(k, v) }
+        val spilled = spilling.iterator.map { case (k, v) => (k, v.get) }.toVector
+
+        val inMemory = new CountAggregation().combinerCombiner()
+        values.foreach { case (k, v) => inMemory.insert(k, v) }
+        val unspilled = inMemory.iterator.map { case (k, v) => (k, v.get) }.toVector
+
+        Iterator((spilled, unspilled))
+      }.collect().head
+
+    assert(spilled.sortBy(_._1) === unspilled.sortBy(_._1))
+    assert(spilled.size === 1000)
+  }
+}
+
 object AggregationSpec {
 
-  class TestAggregation extends Aggregation[Boolean, Int, Seq[Int]] {
+  class TestAggregation(
+    override val inPlace: Boolean = false) extends Aggregation[Boolean, Int, Seq[Int]] {
 
     override lazy val isSpillEnabled = false
 
@@ -84,4 +243,74 @@ object AggregationSpec {
       comb1 ++ comb2
     }
   }
+
+  class SpillableCountAggregation extends CountAggregation {
+
+    override lazy val isSpillEnabled = true
+  }
+
+  class SpillableColumnarCountAggregation extends ColumnarCountAggregation {
+
+    override lazy val isSpillEnabled = true
+  }
+
+  class ColumnarCountAggregation extends CountAggregation {
+
+    override def numColumns: Int = 1
+
+    override def retainsCombiner: Boolean = false
+
+    override def initColumnsByValue(columns: Array[Long], offset: Int, value: Long): Unit = {
+      columns(offset) = value
+    }
+
+    override def mergeColumnsByValue(columns: Array[Long], offset: Int, value: Long): Unit = {
+      columns(offset) += value
+    }
+
+    override def initColumnsByCombiner(
+      columns: Array[Long], offset: Int, combiner: LongOption): Unit = {
+      columns(offset) = combiner.get
+    }
+
+    override def mergeColumnsByCombiner(
+      columns: Array[Long], offset: Int, combiner: LongOption): Unit = {
+      columns(offset) += combiner.get
+    }
+
+    override def writeColumns(
+      columns: Array[Long], offset: Int, combiner: LongOption): LongOption = {
+      combiner.modify(columns(offset))
+      combiner
+    }
+  }
+
+  class CountAggregation extends Aggregation[Int, Long, LongOption] {
+
+    override lazy val isSpillEnabled = false
+
+    override val inPlace = true
+
+    override def newCombiner(): LongOption = {
+      new LongOption(0L)
+    }
+
+    override def initCombinerByValue(combiner: LongOption, value: Long): LongOption = {
+      mergeValue(combiner, value)
+    }
+
+    override def mergeValue(combiner: LongOption, value: Long): LongOption = {
+      combiner.add(value)
+      combiner
+    }
+
+    override def initCombinerByCombiner(comb1: LongOption, comb2: LongOption): LongOption = {
+      mergeCombiners(comb1, comb2)
+    }
+
+    override def mergeCombiners(comb1: LongOption, comb2: LongOption): LongOption = {
+      comb1.add(comb2)
+      comb1
+    }
+  }
 }
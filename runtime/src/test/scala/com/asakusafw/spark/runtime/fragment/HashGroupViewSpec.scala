@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.collection.JavaConversions._
+
+import org.apache.hadoop.io.Writable
+import org.apache.spark.SparkConf
+
+import com.asakusafw.runtime.value.{ IntOption, StringOption }
+import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+@RunWith(classOf[JUnitRunner])
+class HashGroupViewSpecTest extends HashGroupViewSpec
+
+class HashGroupViewSpec extends FlatSpec with SparkForAll {
+
+  import HashGroupViewSpec._
+
+  behavior of classOf[HashGroupView[_]].getSimpleName
+
+  override def configure(conf: SparkConf): SparkConf = {
+    conf.set(Props.BroadcastIndexRetention, "100ms")
+  }
+
+  it should "find groups" in {
+    val view = new TestHashGroupView(
+      (0 until 100).map { i =>
+        key(new IntOption(i), new StringOption(s"${i % 3}")) -> (0 to i % 5).map(j => s"${i}-${j}")
+      }.toMap)
+
+    for (i <- 0 until 100) {
+      val expected = (0 to i % 5).map(j => s"${i}-${j}")
+      assert(view.find(new IntOption(i), new StringOption(s"${i % 3}")).toSeq === expected)
+
+      val out = view.keyOutput
+      new IntOption(i).write(out)
+      new StringOption(s"${i % 3}").write(out)
+      assert(view.findByKeyOutput().toSeq === expected)
+    }
+  }
+
+  it should "return empty list for missing keys" in {
+    val view = new TestHashGroupView(
+      Map(key(new IntOption(1), new StringOption("a")) -> Seq("found")))
+
+    assert(view.find(new IntOption(1), new StringOption("b")).isEmpty)
+    assert(view.find(new IntOption(2), new StringOption("a")).isEmpty)
+
+    val out = view.keyOutput
+    new IntOption(1).write(out)
+    assert(view.findByKeyOutput().isEmpty)
+  }
+
+  it should "handle empty map" in {
+    val view = new TestHashGroupView(Map.empty)
+    assert(view.find(new IntOption(1), new StringOption("a")).isEmpty)
+    assert(view.iterator().isEmpty)
+  }
+
+  it should "share one index between concurrent tasks across task waves" in {
+    val index = GroupIndex[String](
+      (0 until 100).iterator.map { i =>
+        key(new IntOption(i), new StringOption(s"${i % 3}")) -> Seq(s"${i}")
+      },
+      0)
+    val broadcast = sc.broadcast[Map[ShuffleKey, Seq[String]]](index)
+    try {
+      lookups.clear()
+      for (_ <- 0 until 2) {
+        val found = sc.parallelize(0 until 100, 8).mapPartitions { iter =>
+          val view = new TestHashGroupView(broadcast.value)
+          lookups.add(view.lookup)
+          iter.map { i =>
+            view.find(new IntOption(i), new StringOption(s"${i % 3}")).toSeq == Seq(s"${i}")
+          }
+        }.collect()
+        assert(found.forall(identity))
+      }
+      assert(lookups.size === 16)
+      assert(lookups.forall(_ eq lookups.peek()))
+    } finally {
+      lookups.clear()
+      broadcast.destroy()
+    }
+  }
+
+  it should "release index after the retention once tasks complete" in {
+    val index = GroupIndex[String](
+      Iterator(key(new IntOption(1), new StringOption("a")) -> Seq("found")), 0)
+    val id = index.id
+    val broadcast = sc.broadcast[Map[ShuffleKey, Seq[String]]](index)
+    try {
+      val found = sc.parallelize(0 until 4, 4).map { _ =>
+        val view = new TestHashGroupView(broadcast.value)
+        (GroupIndex.cached.contains(id), view.find(new IntOption(1), new StringOption("a")).toList)
+      }.collect()
+      assert(found.forall(_ == (true, Seq("found"))))
+
+      var retry = 0
+      while (GroupIndex.cached.contains(id) && retry < 100) {
+        Thread.sleep(50L)
+        retry += 1
+      }
+      assert(!GroupIndex.cached.contains(id))
+    } finally {
+      broadcast.destroy()
+    }
+  }
+}
+
+object HashGroupViewSpec {
+
+  val lookups = new ConcurrentLinkedQueue[AnyRef]()
+
+  def key(elements: Writable*): ShuffleKey = new ShuffleKey(WritableSerDe.serialize(elements))
+
+  class TestHashGroupView(map: Map[ShuffleKey, Seq[String]]) extends HashGroupView[String](map) {
+
+    override protected def key(elements: Seq[AnyRef]): ShuffleKey = {
+      HashGroupViewSpec.key(elements.map(_.asInstanceOf[Writable]): _*)
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import com.asakusafw.runtime.value.StringOption
+
+@RunWith(classOf[JUnitRunner])
+class OffHeapListBufferSpecTest extends OffHeapListBufferSpec
+
+class OffHeapListBufferSpec extends FlatSpec with SparkForAll {
+
+  import OffHeapListBufferSpec._
+
+  behavior of classOf[OffHeapListBuffer[_]].getSimpleName
+
+  it should "keep records in a page" in {
+    val buffer = new OffHeapListBuffer[StringOption](1024 * 1024)
+    val values = (0 until 10).map(i => s"value-${i}")
+    fill(buffer, values)
+    assert(read(buffer) === values)
+  }
+
+  it should "keep records across pages" in {
+    val buffer = new OffHeapListBuffer[StringOption](64)
+    val values = (0 until 100).map(i => s"value-${i}")
+    fill(buffer, values)
+    assert(read(buffer) === values)
+    assert(read(buffer.get(50)) === "value-50")
+    assert(read(buffer.get(3)) === "value-3")
+  }
+
+  it should "spill records larger than a page" in {
+    val buffer = new OffHeapListBuffer[StringOption](64)
+    val values = (0 until 10).map(i => if (i % 3 == 0) "x" * (100 + i) else s"value-${i}")
+    fill(buffer, values)
+    assert(read(buffer) === values)
+    assert(read(buffer.get(6)) === values(6))
+    assert(read(buffer.get(1)) === values(1))
+  }
+
+  it should "spill records in pages" in {
+    val buffer = new OffHeapListBuffer[StringOption](64)
+    val values = (0 until 100).map(i => s"value-${i}")
+    buffer.begin()
+    values.take(50).foreach(add(buffer, _))
+    assert(buffer.spill() > 0L)
+    values.drop(50).foreach(add(buffer, _))
+    buffer.end()
+    assert(read(buffer) === values)
+    assert(read(buffer) === values)
+    assert(read(buffer.get(75)) === "value-75")
+    assert(read(buffer.get(25)) === "value-25")
+  }
+
+  it should "be reused after shrink" in {
+    val buffer = new OffHeapListBuffer[StringOption](64)
+    fill(buffer, (0 until 100).map(i => s"first-${i}"))
+    buffer.spill()
+    buffer.shrink()
+    val values = (0 until 30).map(i => s"second-${i}")
+    fill(buffer, values)
+    assert(read(buffer) === values)
+
+    val rest = (0 until 5).map(i => s"third-${i}")
+    fill(buffer, rest)
+    assert(read(buffer) === rest)
+  }
+
+  it should "allocate pages from task memory manager" in {
+    val results = sc.parallelize(0 until 4, 4).mapPartitions { iter =>
+      val i = iter.next()
+      val buffer = new OffHeapListBuffer[StringOption](64)
+      val values = (0 until 100).map(j => s"value-${i}-${j}")
+      buffer.begin()
+      values.take(50).foreach(add(buffer, _))
+      val spilled = buffer.spill()
+      values.drop(50).foreach(add(buffer, _))
+      buffer.end()
+      Iterator((spilled > 0L, read(buffer) == values))
+    }.collect()
+    assert(results.forall { case (spilled, same) => spilled && same })
+  }
+}
+
+object OffHeapListBufferSpec {
+
+  def add(buffer: OffHeapListBuffer[StringOption], value: String): Unit = {
+    if (buffer.isExpandRequired()) {
+      buffer.expand(new StringOption())
+    }
+    buffer.advance().modify(value)
+  }
+
+  def fill(buffer: OffHeapListBuffer[StringOption], values: Seq[String]): Unit = {
+    buffer.begin()
+    values.foreach(add(buffer, _))
+    buffer.end()
+  }
+
+  def read(buffer: OffHeapListBuffer[StringOption]): Seq[String] = {
+    (0 until buffer.size).map(i => read(buffer.get(i)))
+  }
+
+  def read(value: StringOption): String = value.getAsString
+}
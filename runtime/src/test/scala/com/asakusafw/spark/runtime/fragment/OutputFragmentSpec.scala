@@ -0,0 +1,156 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import java.io.{ DataInput, DataOutput }
+
+import org.apache.hadoop.io.Writable
+import org.apache.spark.SparkConf
+
+import com.asakusafw.runtime.flow.{ ArrayListBuffer, FileMapListBuffer }
+import com.asakusafw.runtime.model.DataModel
+import com.asakusafw.runtime.value.{ IntOption, StringOption }
+
+@RunWith(classOf[JUnitRunner])
+class OutputFragmentSpecTest extends OutputFragmentSpec
+
+class OutputFragmentSpec extends FlatSpec with SparkForAll with JobContextSugar {
+
+  import OutputFragmentSpec._
+
+  behavior of classOf[OutputFragment[_]].getSimpleName
+
+  override def configure(conf: SparkConf): SparkConf = {
+    conf.set(Props.FragmentAdaptive, true.toString)
+    conf.set(Props.FragmentAdaptiveSamples, 4.toString)
+    conf.set(Props.FragmentAdaptiveThreshold, 1024.toString)
+  }
+
+  it should "decide in-memory buffer for small fan-out" in {
+    val stats = newJobContext(sc).getOrNewFragmentStatistics("inMemory")
+    val sampler = new OutputFragment.Sampler(4, 1024L)
+    for (i <- 0 until 3) {
+      (0 until 3).foreach(j => sampler.add(foo(i * 3 + j)))
+      assert(sampler.sampled() === false)
+    }
+    (0 until 3).foreach(j => sampler.add(foo(9 + j)))
+    assert(sampler.sampled() === true)
+    assert(sampler.decide(Some(stats)) === None)
+    assert(stats.inMemory === 1L)
+    assert(stats.spilling === 0L)
+    assert(stats.fanout === 3.0)
+    assert(stats.recordBytes > 0.0)
+  }
+
+  it should "decide spilling buffer for large fan-out" in {
+    val stats = newJobContext(sc).getOrNewFragmentStatistics("spilling")
+    val sampler = new OutputFragment.Sampler(4, 64L)
+    (0 until 100).foreach(i => sampler.add(foo(i)))
+    assert(sampler.exceeded)
+    val window = sampler.decide(Some(stats))
+    assert(window.isDefined)
+    assert(stats.inMemory === 0L)
+    assert(stats.spilling === 1L)
+    assert(stats.fanout === 100.0)
+    assert(window.get === 64 / stats.recordBytes.toInt)
+    assert(stats.window === window.get.toDouble)
+  }
+
+  it should "switch to spilling buffer in the middle of an input" in {
+    val stats = newJobContext(sc).getOrNewFragmentStatistics("switch")
+    val fragment = new GenericOutputFragment[Foo]()
+    fragment.setStatistics(Some(stats))
+    assert(fragment.buffer.isInstanceOf[ArrayListBuffer[_]])
+
+    fragment.reset()
+    (0 until 1000).foreach(i => fragment.add(foo(i)))
+    assert(fragment.buffer.isInstanceOf[FileMapListBuffer[_]])
+    assert(stats.spilling === 1L)
+    assert(fragment.iterator.map(_.id.get).toList === (0 until 1000))
+
+    fragment.reset()
+    (0 until 10).foreach(i => fragment.add(foo(i)))
+    assert(fragment.iterator.map(_.id.get).toList === (0 until 10))
+    assert(stats.spilling === 1L)
+  }
+
+  it should "keep in-memory buffer after sampling small inputs" in {
+    val stats = newJobContext(sc).getOrNewFragmentStatistics("keep")
+    val fragment = new GenericOutputFragment[Foo]()
+    fragment.setStatistics(Some(stats))
+    for (i <- 0 until 10) {
+      fragment.reset()
+      (0 until 3).foreach(j => fragment.add(foo(i * 3 + j)))
+      assert(fragment.iterator.map(_.id.get).toList === (0 until 3).map(i * 3 + _))
+    }
+    assert(fragment.buffer.isInstanceOf[ArrayListBuffer[_]])
+    assert(stats.inMemory === 1L)
+    assert(stats.spilling === 0L)
+  }
+
+  it should "respect configured buffer size" in {
+    val stats = newJobContext(sc).getOrNewFragmentStatistics("configured")
+    val fragment = new GenericOutputFragment[Foo](10)
+    fragment.setStatistics(Some(stats))
+    assert(fragment.buffer.isInstanceOf[FileMapListBuffer[_]])
+    for (i <- 0 until 10) {
+      fragment.reset()
+      (0 until 100).foreach(j => fragment.add(foo(j)))
+      assert(fragment.iterator.map(_.id.get).toList === (0 until 100))
+    }
+    assert(fragment.buffer.isInstanceOf[FileMapListBuffer[_]])
+    assert(stats.inMemory === 0L)
+    assert(stats.spilling === 0L)
+  }
+}
+
+object OutputFragmentSpec {
+
+  def foo(i: Int): Foo = {
+    val foo = new Foo()
+    foo.id.modify(i)
+    foo.key.modify(s"value-${i}")
+    foo
+  }
+
+  class Foo extends DataModel[Foo] with Writable {
+
+    val id = new IntOption()
+    val key = new StringOption()
+
+    override def reset(): Unit = {
+      id.setNull()
+      key.setNull()
+    }
+    override def copyFrom(other: Foo): Unit = {
+      id.copyFrom(other.id)
+      key.copyFrom(other.key)
+    }
+    override def readFields(in: DataInput): Unit = {
+      id.readFields(in)
+      key.readFields(in)
+    }
+    override def write(out: DataOutput): Unit = {
+      id.write(out)
+      key.write(out)
+    }
+  }
+}
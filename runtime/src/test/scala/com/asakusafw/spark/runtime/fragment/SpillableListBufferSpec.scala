@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.collection.JavaConversions._
+import scala.util.Random
+
+import com.asakusafw.runtime.value.IntOption
+
+@RunWith(classOf[JUnitRunner])
+class SpillableListBufferSpecTest extends SpillableListBufferSpec
+
+class SpillableListBufferSpec extends FlatSpec {
+
+  import SpillableListBufferSpec._
+
+  behavior of classOf[SpillableListBuffer[_]].getSimpleName
+
+  it should "keep records under threshold in memory" in {
+    val buffer = new SpillableListBuffer[IntOption](10)
+    fill(buffer, 0 until 5)
+    assert(read(buffer) === (0 until 5))
+  }
+
+  it should "iterate spilled records repeatedly" in {
+    val buffer = new SpillableListBuffer[IntOption](10)
+    fill(buffer, 0 until 3000)
+    assert(read(buffer) === (0 until 3000))
+    assert(read(buffer) === (0 until 3000))
+    assert(buffer.iterator.map(_.get).toList === (0 until 3000))
+  }
+
+  it should "access spilled records randomly across checkpoints" in {
+    val buffer = new SpillableListBuffer[IntOption](10)
+    fill(buffer, 0 until 5000)
+    val random = new Random(0)
+    for (_ <- 0 until 1000) {
+      val i = random.nextInt(5000)
+      assert(buffer.get(i).get === i)
+    }
+    for (i <- Seq(4999, 10, 1033, 1034, 2058, 9, 3000, 2999, 1033)) {
+      assert(buffer.get(i).get === i)
+    }
+  }
+
+  it should "be reused after shrink" in {
+    val buffer = new SpillableListBuffer[IntOption](10)
+    fill(buffer, 0 until 3000)
+    assert(read(buffer) === (0 until 3000))
+    buffer.shrink()
+
+    fill(buffer, 100 until 105)
+    assert(read(buffer) === (100 until 105))
+    buffer.shrink()
+
+    fill(buffer, 200 until 2200)
+    assert(read(buffer) === (200 until 2200))
+    assert(buffer.get(1500).get === 1700)
+  }
+}
+
+object SpillableListBufferSpec {
+
+  def fill(buffer: SpillableListBuffer[IntOption], values: Seq[Int]): Unit = {
+    buffer.begin()
+    values.foreach { value =>
+      if (buffer.isExpandRequired()) {
+        buffer.expand(new IntOption())
+      }
+      buffer.advance().modify(value)
+    }
+    buffer.end()
+  }
+
+  def read(buffer: SpillableListBuffer[IntOption]): Seq[Int] = {
+    (0 until buffer.size).map(i => buffer.get(i).get)
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package fragment
+package user.join
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import java.util.{ List => JList }
+
+import scala.collection.mutable
+
+import com.asakusafw.runtime.model.DataModel
+import com.asakusafw.runtime.value.IntOption
+import com.asakusafw.spark.runtime.operator.DefaultMasterSelection
+
+@RunWith(classOf[JUnitRunner])
+class ShuffledJoinOperatorFragmentSpecTest extends ShuffledJoinOperatorFragmentSpec
+
+class ShuffledJoinOperatorFragmentSpec extends FlatSpec {
+
+  import ShuffledJoinOperatorFragmentSpec._
+
+  behavior of classOf[ShuffledJoinOperatorFragment[_, _]].getSimpleName
+
+  for {
+    (name, masters) <- Seq(
+      "no masters" -> Seq.empty[Int],
+      "a master" -> Seq(10),
+      "several masters" -> Seq(10, 20, 30))
+  } {
+    it should s"join first master same as default master selection with ${name}" in {
+      val transactions = Seq(1, 2, 3)
+
+      val buffered = new TestJoinOperatorFragment(firstMasterOnly = false)
+      val streamed = new TestJoinOperatorFragment(firstMasterOnly = true)
+      for (fragment <- Seq(buffered, streamed)) {
+        fragment.add(IndexedSeq(
+          masters.iterator.map(Master(_)),
+          transactions.iterator.map(Tx(_))))
+        fragment.add(IndexedSeq(
+          masters.reverseIterator.map(Master(_)),
+          transactions.reverseIterator.map(Tx(_))))
+      }
+
+      assert(streamed.joined === buffered.joined)
+      assert(streamed.joined.size === transactions.size * 2)
+      assert(streamed.joined.take(3).map(_._1).forall(_ == masters.headOption))
+      assert(streamed.joined.drop(3).map(_._1).forall(_ == masters.lastOption))
+    }
+  }
+}
+
+object ShuffledJoinOperatorFragmentSpec {
+
+  class TestJoinOperatorFragment(override val firstMasterOnly: Boolean)
+    extends ShuffledJoinOperatorFragment[Master, Tx] {
+
+    val joined = mutable.ArrayBuffer.empty[(Option[Int], Int)]
+
+    override def newMasterDataModel: Master = new Master()
+
+    override def masterSelection(masters: JList[Master], tx: Tx): Master = {
+      DefaultMasterSelection.select(masters, tx)
+    }
+
+    override def join(master: Master, tx: Tx): Unit = {
+      joined += ((Option(master).map(_.id.get), tx.id.get))
+    }
+
+    override def doReset(): Unit = {}
+  }
+
+  class Master extends DataModel[Master] {
+
+    val id = new IntOption()
+
+    override def reset(): Unit = {
+      id.setNull()
+    }
+    override def copyFrom(other: Master): Unit = {
+      id.copyFrom(other.id)
+    }
+  }
+
+  object Master {
+
+    def apply(id: Int): Master = {
+      val master = new Master()
+      master.id.modify(id)
+      master
+    }
+  }
+
+  class Tx extends DataModel[Tx] {
+
+    val id = new IntOption()
+
+    override def reset(): Unit = {
+      id.setNull()
+    }
+    override def copyFrom(other: Tx): Unit = {
+      id.copyFrom(other.id)
+    }
+  }
+
+  object Tx {
+
+    def apply(id: Int): Tx = {
+      val tx = new Tx()
+      tx.id.modify(id)
+      tx
+    }
+  }
+}
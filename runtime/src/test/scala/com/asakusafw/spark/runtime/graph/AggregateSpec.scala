@@ -21,6 +21,7 @@ import org.scalatest.FlatSpec
 import org.scalatest.junit.JUnitRunner
 
 import java.io.{ DataInput, DataOutput }
+import java.math.{ BigDecimal => JBigDecimal }
 
 import scala.collection.JavaConversions._
 import scala.concurrent.{ Await, Future }
@@ -34,7 +35,7 @@ import org.apache.spark.rdd.RDD
 
 import com.asakusafw.bridge.api.BatchContext
 import com.asakusafw.runtime.model.DataModel
-import com.asakusafw.runtime.value.IntOption
+import com.asakusafw.runtime.value.{ DecimalOption, IntOption }
 import com.asakusafw.spark.runtime.aggregation.Aggregation
 import com.asakusafw.spark.runtime.fragment.{
   Fragment,
@@ -128,6 +129,38 @@ class AggregateSpec
       assert(result ===
         Seq((0, (0 until 10 by 2).map(_ * 100).sum), (1, (1 until 10 by 2).map(_ * 100).sum)))
     }
+
+    it should s"aggregate keys with non-canonical encodings once for each encoding: [${conf}]" in {
+      import TotalAggregate._
+
+      implicit val jobContext = newJobContext(sc)
+
+      val foos =
+        new ParallelCollectionSource(Input, (0 until 60), numSlices)("foos")
+          .map(Input)(Foo.decimalIntToFoo)
+
+      val sort = Option(new DecimalSortOrdering())
+      val partitioner = new HashPartitioner(1)
+      val aggregation = new TestAggregation()
+
+      val aggregate =
+        new TestAggregate(
+          (foos, Input),
+          sort, partitioner, mapSideCombine, aggregation)("aggregate")
+
+      val rc = newRoundContext(batchArguments = Map("bias" -> 0.toString))
+
+      val result = Await.result(
+        aggregate.compute(rc).apply(Result).map {
+          _().map {
+            case (_, foo: Foo) => (foo.id.get, foo.sum.get)
+          }.collect.toSeq.sorted
+        }, Duration.Inf)
+      assert(result ===
+        (0 until 60).groupBy(i => (i % 2, Foo.decimalScale(i))).toSeq.map {
+          case ((id, _), is) => (id, is.map(_ * 100).sum)
+        }.sorted)
+    }
   }
 
   it should s"aggregate partially" in {
@@ -204,6 +237,23 @@ object AggregateSpec {
 
   object Foo {
 
+    def decimalScale(i: Int): Int = (i / 2) % 3
+
+    def decimalIntToFoo: Int => (_, Foo) = {
+
+      lazy val foo = new Foo()
+      lazy val key = new DecimalOption()
+
+      { i =>
+        foo.id.modify(i % 2)
+        foo.sum.modify(i * 100)
+        key.modify(JBigDecimal.valueOf(i % 2).setScale(decimalScale(i)))
+        val shuffleKey = new ShuffleKey(
+          WritableSerDe.serialize(key), WritableSerDe.serialize(foo.sum))
+        (shuffleKey, foo)
+      }
+    }
+
     def intToFoo: Int => (_, Foo) = {
 
       lazy val foo = new Foo()
@@ -320,6 +370,22 @@ object AggregateSpec {
         }
       }
     }
+
+    class DecimalSortOrdering extends Ordering[ShuffleKey] {
+
+      override def compare(x: ShuffleKey, y: ShuffleKey): Int = {
+        val xGrouping = x.grouping
+        val yGrouping = y.grouping
+        val cmp = DecimalOption.compareBytes(xGrouping, 0, xGrouping.length, yGrouping, 0, yGrouping.length)
+        if (cmp == 0) {
+          val xOrdering = x.ordering
+          val yOrdering = y.ordering
+          IntOption.compareBytes(yOrdering, 0, yOrdering.length, xOrdering, 0, xOrdering.length)
+        } else {
+          cmp
+        }
+      }
+    }
   }
 
   object PartialAggregate {
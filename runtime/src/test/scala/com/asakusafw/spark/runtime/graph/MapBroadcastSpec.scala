@@ -27,8 +27,9 @@ import scala.concurrent.ExecutionContext.Implicits.global
 import scala.concurrent.duration.Duration
 
 import org.apache.hadoop.io.Writable
-import org.apache.spark.HashPartitioner
+import org.apache.spark.{ HashPartitioner, SparkConf }
 import org.apache.spark.broadcast.{ Broadcast => Broadcasted }
+import org.apache.spark.serializer.JavaSerializer
 
 import com.asakusafw.runtime.model.DataModel
 import com.asakusafw.runtime.value.{ IntOption, StringOption }
@@ -155,6 +156,52 @@ class MapBroadcastSpec extends FlatSpec with SparkForAll with JobContextSugar wi
   }
 }
 
+@RunWith(classOf[JUnitRunner])
+class DistributedMapBroadcastSpecTest extends DistributedMapBroadcastSpec
+
+class DistributedMapBroadcastSpec extends MapBroadcastSpec {
+
+  import MapBroadcastSpec._
+
+  override def configure(conf: SparkConf): SparkConf = {
+    conf.set(Props.BroadcastDistributed, true.toString)
+  }
+
+  it should "probe partitioned indices from tasks through a small manifest" in {
+    implicit val jobContext = newJobContext(sc)
+
+    val source =
+      new ParallelCollectionSource[(Int, String)](Input,
+        (0 until 10).flatMap { i =>
+          (0 to i).map { j =>
+            (((i * (i + 1)) / 2 + j, "%02d".format(i)), math.random)
+          }
+        }.sortBy(_._2).map(_._1))("input")
+        .map[(Int, String), (_, Foo)](Input)(Foo.intToFoo)
+
+    val broadcast = new MapBroadcastOnce(
+      Seq((source, Input)),
+      None,
+      new GroupingOrdering(),
+      new HashPartitioner(2))("broadcast")
+
+    val rc = newRoundContext()
+
+    val broadcasted = Await.result(broadcast.broadcast(rc), Duration.Inf)
+    assert(broadcasted.isInstanceOf[DistributedBroadcast])
+    assert(new JavaSerializer(sc.getConf).newInstance().serialize(broadcasted).limit() < 1024)
+
+    val sizes = sc.parallelize(0 until 10, 4).map { i =>
+      val key = new StringOption()
+      key.modify("%02d".format(i))
+      broadcasted.value.get(new ShuffleKey(WritableSerDe.serialize(key))).map(_.size)
+    }.collect().toSeq
+    assert(sizes === (0 until 10).map(i => Some(i + 1)))
+
+    broadcasted.destroy()
+  }
+}
+
 object MapBroadcastSpec {
 
   class Foo extends DataModel[Foo] with Writable {
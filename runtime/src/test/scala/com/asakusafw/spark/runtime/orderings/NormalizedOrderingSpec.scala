@@ -0,0 +1,243 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package orderings
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import com.asakusafw.runtime.value._
+import com.asakusafw.spark.runtime.io.NormalizedKeySerDe
+import com.asakusafw.spark.runtime.rdd.ShuffleKey
+
+@RunWith(classOf[JUnitRunner])
+class NormalizedOrderingSpecTest extends NormalizedOrderingSpec
+
+class NormalizedOrderingSpec extends FlatSpec {
+
+  behavior of classOf[NormalizedSortOrdering].getSimpleName
+
+  it should "compare int keys in value order" in {
+    val values = Seq(
+      new IntOption(),
+      new IntOption(Int.MinValue),
+      new IntOption(-1),
+      new IntOption(0),
+      new IntOption(1),
+      new IntOption(Int.MaxValue))
+    assertSorted(values.map(v => new ShuffleKey(NormalizedKeySerDe.serialize(Seq(v)))))
+  }
+
+  it should "compare long keys in value order" in {
+    val values = Seq(
+      new LongOption(),
+      new LongOption(Long.MinValue),
+      new LongOption(-256L),
+      new LongOption(0L),
+      new LongOption(255L),
+      new LongOption(Long.MaxValue))
+    assertSorted(values.map(v => new ShuffleKey(NormalizedKeySerDe.serialize(Seq(v)))))
+  }
+
+  it should "compare double keys in value order" in {
+    val values = Seq(
+      new DoubleOption(),
+      new DoubleOption(Double.NegativeInfinity),
+      new DoubleOption(-1.5),
+      new DoubleOption(-0.0),
+      new DoubleOption(0.0),
+      new DoubleOption(1.5),
+      new DoubleOption(Double.PositiveInfinity))
+    assertSorted(values.map(v => new ShuffleKey(NormalizedKeySerDe.serialize(Seq(v)))))
+  }
+
+  it should "compare string keys in value order" in {
+    val values = Seq(
+      new StringOption(),
+      new StringOption(""),
+      new StringOption("a"),
+      new StringOption("a\u0000"),
+      new StringOption("a\u0000b"),
+      new StringOption("ab"),
+      new StringOption("abcdefghijklmnopqrstuvwxyz"),
+      new StringOption("b"))
+    assertSorted(values.map(v => new ShuffleKey(NormalizedKeySerDe.serialize(Seq(v)))))
+  }
+
+  it should "compare composite keys in value order" in {
+    val keys = for {
+      s <- Seq("a", "ab", "b")
+      i <- Seq(-1, 0, 1)
+    } yield {
+      new ShuffleKey(
+        NormalizedKeySerDe.serialize(Seq(new StringOption(s), new IntOption(i))))
+    }
+    assertSorted(keys)
+  }
+
+  it should "compare ordering with descending properties" in {
+    val grouping = NormalizedKeySerDe.serialize(Seq(new IntOption(1)))
+    val keys = for {
+      l <- Seq(10L, 0L, -10L)
+      s <- Seq("a", "b")
+    } yield {
+      new ShuffleKey(
+        grouping,
+        NormalizedKeySerDe.serialize(Seq(new LongOption(l), new StringOption(s)), 1L))
+    }
+    assertSorted(keys)
+  }
+
+  it should "compare boolean keys consistently with BooleanOption" in {
+    assertConsistent(Seq(
+      new BooleanOption(),
+      new BooleanOption(false),
+      new BooleanOption(true)))
+  }
+
+  it should "compare byte keys consistently with ByteOption" in {
+    assertConsistent(Seq(
+      new ByteOption(),
+      new ByteOption(Byte.MinValue),
+      new ByteOption(-1.toByte),
+      new ByteOption(0.toByte),
+      new ByteOption(1.toByte),
+      new ByteOption(Byte.MaxValue)))
+  }
+
+  it should "compare short keys consistently with ShortOption" in {
+    assertConsistent(Seq(
+      new ShortOption(),
+      new ShortOption(Short.MinValue),
+      new ShortOption(-256.toShort),
+      new ShortOption(0.toShort),
+      new ShortOption(255.toShort),
+      new ShortOption(Short.MaxValue)))
+  }
+
+  it should "compare int keys consistently with IntOption" in {
+    assertConsistent(Seq(
+      new IntOption(),
+      new IntOption(Int.MinValue),
+      new IntOption(-1),
+      new IntOption(0),
+      new IntOption(1),
+      new IntOption(Int.MaxValue)))
+  }
+
+  it should "compare long keys consistently with LongOption" in {
+    assertConsistent(Seq(
+      new LongOption(),
+      new LongOption(Long.MinValue),
+      new LongOption(-1L),
+      new LongOption(0L),
+      new LongOption(1L),
+      new LongOption(Long.MaxValue)))
+  }
+
+  it should "compare float keys consistently with FloatOption" in {
+    assertConsistent(Seq(
+      new FloatOption(),
+      new FloatOption(Float.NegativeInfinity),
+      new FloatOption(Float.MinValue),
+      new FloatOption(-1.5f),
+      new FloatOption(-Float.MinPositiveValue),
+      new FloatOption(-0.0f),
+      new FloatOption(0.0f),
+      new FloatOption(Float.MinPositiveValue),
+      new FloatOption(1.5f),
+      new FloatOption(Float.MaxValue),
+      new FloatOption(Float.PositiveInfinity)))
+  }
+
+  it should "compare double keys consistently with DoubleOption" in {
+    assertConsistent(Seq(
+      new DoubleOption(),
+      new DoubleOption(Double.NegativeInfinity),
+      new DoubleOption(-1.5),
+      new DoubleOption(-0.0),
+      new DoubleOption(0.0),
+      new DoubleOption(1.5),
+      new DoubleOption(Double.PositiveInfinity)))
+  }
+
+  it should "compare date keys consistently with DateOption" in {
+    assertConsistent(Seq(
+      new DateOption(),
+      new DateOption(new Date(1, 1, 1)),
+      new DateOption(new Date(1969, 12, 31)),
+      new DateOption(new Date(1970, 1, 1)),
+      new DateOption(new Date(2019, 1, 1)),
+      new DateOption(new Date(2019, 1, 2)),
+      new DateOption(new Date(9999, 12, 31))))
+  }
+
+  it should "compare date-time keys consistently with DateTimeOption" in {
+    assertConsistent(Seq(
+      new DateTimeOption(),
+      new DateTimeOption(new DateTime(1, 1, 1, 0, 0, 0)),
+      new DateTimeOption(new DateTime(1969, 12, 31, 23, 59, 59)),
+      new DateTimeOption(new DateTime(1970, 1, 1, 0, 0, 0)),
+      new DateTimeOption(new DateTime(2019, 1, 1, 0, 0, 0)),
+      new DateTimeOption(new DateTime(2019, 1, 1, 0, 0, 1)),
+      new DateTimeOption(new DateTime(9999, 12, 31, 23, 59, 59))))
+  }
+
+  it should "compare string keys consistently with StringOption" in {
+    assertConsistent(Seq(
+      new StringOption(),
+      new StringOption(""),
+      new StringOption("a"),
+      new StringOption("a\u0000"),
+      new StringOption("a\u0000b"),
+      new StringOption("ab"),
+      new StringOption("\u3042"),
+      new StringOption("b")))
+  }
+
+  private def assertConsistent[V <: ValueOption[V]](values: Seq[V]): Unit = {
+    val ordering = new NormalizedSortOrdering()
+    for {
+      x <- values
+      y <- values
+    } {
+      val expected = math.signum(x.compareTo(y))
+      assert(
+        math.signum(ordering.compare(
+          new ShuffleKey(NormalizedKeySerDe.serialize(Seq(x))),
+          new ShuffleKey(NormalizedKeySerDe.serialize(Seq(y))))) === expected,
+        s"${x} and ${y}")
+      assert(
+        math.signum(ordering.compare(
+          new ShuffleKey(Array.emptyByteArray, NormalizedKeySerDe.serialize(Seq(x), 1L)),
+          new ShuffleKey(Array.emptyByteArray, NormalizedKeySerDe.serialize(Seq(y), 1L)))) ===
+          -expected,
+        s"${x} and ${y} (descending)")
+    }
+  }
+
+  private def assertSorted(keys: Seq[ShuffleKey]): Unit = {
+    val ordering = new NormalizedSortOrdering()
+    for {
+      (x, i) <- keys.zipWithIndex
+      (y, j) <- keys.zipWithIndex
+    } {
+      assert(math.signum(ordering.compare(x, y)) === math.signum(i.compareTo(j)),
+        s"keys(${i}) and keys(${j})")
+    }
+  }
+}
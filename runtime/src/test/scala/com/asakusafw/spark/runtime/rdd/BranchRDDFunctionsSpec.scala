@@ -20,7 +20,12 @@ import org.junit.runner.RunWith
 import org.scalatest.FlatSpec
 import org.scalatest.junit.JUnitRunner
 
-import org.apache.spark.{ HashPartitioner, TaskContext }
+import java.io.{ ByteArrayInputStream, ByteArrayOutputStream }
+
+import org.apache.spark.{ HashPartitioner, SparkConf, TaskContext }
+import org.apache.spark.serializer.JavaSerializer
+
+import com.asakusafw.spark.runtime.serializer.BranchShuffleSerializer
 
 @RunWith(classOf[JUnitRunner])
 class BranchRDDFunctionsSpecTest extends BranchRDDFunctionsSpec
@@ -120,4 +125,16 @@ class BranchRDDFunctionsSpec extends FlatSpec with SparkForAll {
       case (_, (_, partid)) => partid == TaskContext.get.partitionId
     }.collect.forall(_ == true))
   }
+
+  it should "write only actual keys to shuffle" in {
+    val serializer = new BranchShuffleSerializer(new JavaSerializer(new SparkConf())).newInstance()
+    val out = new ByteArrayOutputStream()
+    val stream = serializer.serializeStream(out)
+    stream.writeKey(Branch(BranchKey(1), 10))
+    stream.writeValue("a")
+    stream.close()
+
+    val in = serializer.deserializeStream(new ByteArrayInputStream(out.toByteArray))
+    assert(in.asKeyValueIterator.toList === List((10, "a")))
+  }
 }
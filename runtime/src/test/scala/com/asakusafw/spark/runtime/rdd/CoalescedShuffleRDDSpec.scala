@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package rdd
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.Duration
+
+import org.apache.spark.{ HashPartitioner, SparkConf }
+import org.apache.spark.rdd.RDD
+
+@RunWith(classOf[JUnitRunner])
+class CoalescedShuffleRDDSpecTest extends CoalescedShuffleRDDSpec
+
+class CoalescedShuffleRDDSpec extends FlatSpec with SparkForAll {
+
+  behavior of classOf[CoalescedShuffleRDD[_, _]].getSimpleName
+
+  it should "coalesce small partitions" in {
+    val part = new HashPartitioner(8)
+    val rdd: RDD[(Int, Any)] = sc.parallelize(0 until 100, 4).map(i => (i, i)).partitionBy(part)
+
+    val (coalesced, coalescedPart) = Await.result(
+      CoalescedShuffleRDD.coalesce(Seq((rdd, None)), part)(new SparkConf()),
+      Duration.Inf)
+
+    assert(coalescedPart.numPartitions === 1)
+    assert(coalesced.size === 1)
+    assert(coalesced.head.partitions.length === 1)
+    assert(coalesced.head.partitioner === Some(coalescedPart))
+    assert(coalesced.head.map(_._1).collect().sorted === (0 until 100))
+  }
+
+  it should "merge sorted partitions" in {
+    val part = new HashPartitioner(8)
+    val rdd: RDD[(Int, Any)] = sc.parallelize(0 until 100, 4).map(i => (i, i))
+      .repartitionAndSortWithinPartitions(part)
+
+    val (coalesced, _) = Await.result(
+      CoalescedShuffleRDD.coalesce(Seq((rdd, Some(Ordering.Int))), part)(new SparkConf()),
+      Duration.Inf)
+
+    assert(coalesced.head.map(_._1).collect() === (0 until 100))
+  }
+
+  it should "merge sorted partitions through narrow dependencies" in {
+    val part = new HashPartitioner(8)
+    val rdd: RDD[(Int, Any)] = sc.parallelize(0 until 100, 4).map(i => (i, i))
+      .repartitionAndSortWithinPartitions(part)
+      .mapPartitions(identity, preservesPartitioning = true)
+
+    val (coalesced, _) = Await.result(
+      CoalescedShuffleRDD.coalesce(Seq((rdd, Some(Ordering.Int))), part)(new SparkConf()),
+      Duration.Inf)
+
+    assert(coalesced.head.partitions.length === 1)
+    assert(coalesced.head.map(_._1).collect() === (0 until 100))
+  }
+
+  it should "read ranges of branched partitions" in {
+    val part = new HashPartitioner(8)
+    val ordering = Ordering.Int.reverse
+    val branched = sc.parallelize(0 until 100, 4).branch[Int, Int](
+      Set(BranchKey(0), BranchKey(1)),
+      iter => iter.map(i => (Branch(BranchKey(i % 2), i), i)),
+      partitioners = Map(BranchKey(0) -> part, BranchKey(1) -> part),
+      keyOrderings = Map(BranchKey(0) -> ordering, BranchKey(1) -> ordering),
+      valueMappers = Map(
+        BranchKey(0) -> { () => (v: Int) => v * 10 },
+        BranchKey(1) -> { () => (v: Int) => v * 10 }))
+
+    // One of the branches reads the shuffle at a non-zero reduce offset.
+    for {
+      (branchKey, rdd) <- branched
+    } {
+      val (coalesced, coalescedPart) = Await.result(
+        CoalescedShuffleRDD.coalesce(
+          Seq((rdd.asInstanceOf[RDD[(Int, Any)]], Some(ordering))), part)(new SparkConf()),
+        Duration.Inf)
+
+      assert(coalescedPart.numPartitions === 1)
+      assert(coalesced.head.partitions.length === 1)
+      val expected = (branchKey.id until 100 by 2).reverse
+      assert(coalesced.head.collect() === expected.map(i => (i, i * 10)))
+    }
+  }
+
+  it should "not coalesce large partitions" in {
+    val part = new HashPartitioner(8)
+    val rdd: RDD[(Int, Any)] = sc.parallelize(0 until 100, 4).map(i => (i, i)).partitionBy(part)
+
+    val (coalesced, coalescedPart) = Await.result(
+      CoalescedShuffleRDD.coalesce(Seq((rdd, None)), part)(
+        new SparkConf().set(Props.CoalesceTargetSize, "1")),
+      Duration.Inf)
+
+    assert(coalescedPart === part)
+    assert(coalesced.head eq rdd)
+  }
+
+  behavior of classOf[CoalescedPartitioner].getSimpleName
+
+  it should "map parent partitions to groups" in {
+    val part = new CoalescedPartitioner(new HashPartitioner(8), Array(0, 3, 4, 8))
+    assert(part.numPartitions === 3)
+    assert((0 until 8).map(part.getPartition) === Seq(0, 0, 0, 1, 2, 2, 2, 2))
+    assert(part === new CoalescedPartitioner(new HashPartitioner(8), Array(0, 3, 4, 8)))
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package rdd
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import org.apache.spark.SparkConf
+import org.apache.spark.serializer.KryoSerializer
+
+import com.asakusafw.runtime.value.{ IntOption, StringOption }
+import com.asakusafw.spark.runtime.io.WritableSerDe
+import com.asakusafw.spark.runtime.serializer.KryoRegistrator
+
+@RunWith(classOf[JUnitRunner])
+class ShuffleKeySpecTest extends ShuffleKeySpec
+
+class ShuffleKeySpec extends FlatSpec {
+
+  behavior of classOf[ShuffleKey].getSimpleName
+
+  it should "keep hash code and prefix after serializer round trip" in {
+    val serializer = new KryoSerializer(
+      new SparkConf().set("spark.kryo.registrator", classOf[KryoRegistrator].getName))
+      .newInstance()
+    for {
+      i <- Seq(0, 1, -1, Int.MaxValue)
+      s <- Seq("", "a", "abcdefghijklmnopqrstuvwxyz")
+    } {
+      val key = new ShuffleKey(
+        WritableSerDe.serialize(Seq(new IntOption(i), new StringOption(s))),
+        WritableSerDe.serialize(new StringOption(s)))
+      val copy = serializer.deserialize[ShuffleKey](serializer.serialize(key))
+      assert(copy === key)
+      assert(copy.hashCode === key.hashCode)
+      assert(copy.prefix === key.prefix)
+      assert(copy.dropOrdering.hashCode === key.hashCode)
+    }
+  }
+
+  it should "compute hash code consistently when it is zero" in {
+    val key = new ShuffleKey(Array.emptyByteArray)
+    assert(key.hashCode === java.util.Arrays.hashCode(Array.emptyByteArray))
+    assert(key.hashCode === new ShuffleKey(Array.emptyByteArray).hashCode)
+    assert(key.prefix === 0L)
+  }
+
+  it should "compute prefix from leading grouping bytes" in {
+    val key = new ShuffleKey(Array[Byte](1, 2, 3, 4, 5, 6, 7, 8, 9), Array[Byte](10))
+    assert(key.prefix === 0x0102030405060708L)
+    assert(new ShuffleKey(Array[Byte](-1)).prefix === 0xff00000000000000L)
+  }
+}
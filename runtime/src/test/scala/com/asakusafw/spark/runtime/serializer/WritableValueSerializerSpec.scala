@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package serializer
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import java.io.{ ByteArrayInputStream, ByteArrayOutputStream }
+
+import org.apache.spark.SparkConf
+import org.apache.spark.serializer.{ JavaSerializer, KryoSerializer }
+
+import com.esotericsoftware.kryo.io.{ Input, Output }
+
+import com.asakusafw.runtime.value.{ IntOption, StringOption }
+import com.asakusafw.spark.runtime.io.{ WritableSerDe, WritableValue }
+
+@RunWith(classOf[JUnitRunner])
+class WritableValueSerializerSpecTest extends WritableValueSerializerSpec
+
+class WritableValueSerializerSpec extends FlatSpec {
+
+  behavior of classOf[WritableValueSerializer].getSimpleName
+
+  it should "write reused values and read them back as bytes" in {
+    val serializer = new KryoSerializer(
+      new SparkConf().set("spark.kryo.registrator", classOf[KryoRegistrator].getName))
+      .newInstance()
+    val values = (0 until 10).map(i => new StringOption(s"value-${i}" * i))
+
+    val out = new ByteArrayOutputStream()
+    val stream = serializer.serializeStream(out)
+    val serialize = WritableValue.serializer(true)
+    values.foreach { value =>
+      stream.writeKey(value.getAsString)
+      stream.writeValue(serialize(value))
+    }
+    stream.close()
+
+    val in = serializer.deserializeStream(new ByteArrayInputStream(out.toByteArray))
+    val results = in.asKeyValueIterator.map {
+      case (key, bytes: Array[Byte]) =>
+        val value = new StringOption()
+        WritableSerDe.deserialize(bytes, value)
+        (key, value)
+    }.toList
+    assert(results === values.map(value => (value.getAsString, value)))
+  }
+
+  it should "produce the same bytes as WritableSerDe.serialize" in {
+    val serializer = new KryoSerializer(
+      new SparkConf().set("spark.kryo.registrator", classOf[KryoRegistrator].getName))
+      .newInstance()
+    val value = new IntOption(100)
+    val bytes = serializer.deserialize[AnyRef](
+      serializer.serialize[AnyRef](WritableValue.serializer(true)(value)))
+    assert(bytes.asInstanceOf[Array[Byte]] === WritableSerDe.serialize(value))
+  }
+
+  it should "read lines and UTF strings through the Kryo input" in {
+    val output = new Output(64, -1)
+    val out = new OutputAdapter()
+    out.output = output
+    out.writeBytes("a\r\nb\rc\nd\n")
+    out.writeUTF("\u3042")
+
+    val in = new InputAdapter()
+    in.input = new Input(output.toBytes)
+    assert(in.readLine() === "a")
+    assert(in.readLine() === "b")
+    assert(in.readLine() === "c")
+    assert(in.readLine() === "d")
+    assert(in.readUTF() === "\u3042")
+    assert(in.readLine() === null)
+  }
+
+  behavior of "WritableValue"
+
+  it should "be enabled only with Kryo and auto-reset" in {
+    val conf = new SparkConf()
+      .set(Props.ShuffleReuseValue, true.toString)
+      .set("spark.serializer", classOf[KryoSerializer].getName)
+    assert(WritableValue.isEnabled(conf) === true)
+    assert(WritableValue.isEnabled(
+      conf.clone.set(Props.ShuffleReuseValue, false.toString)) === false)
+    assert(WritableValue.isEnabled(
+      conf.clone.set("spark.serializer", classOf[JavaSerializer].getName)) === false)
+    assert(WritableValue.isEnabled(
+      conf.clone.set("spark.kryo.autoReset", false.toString)) === false)
+    assert(WritableValue.isEnabled(new SparkConf()) === false)
+  }
+
+  it should "copy values when disabled" in {
+    val serialize = WritableValue.serializer(false)
+    val value = new IntOption(1)
+    val first = serialize(value)
+    value.modify(2)
+    val second = serialize(value)
+    assert(first.asInstanceOf[Array[Byte]] === WritableSerDe.serialize(new IntOption(1)))
+    assert(second.asInstanceOf[Array[Byte]] === WritableSerDe.serialize(new IntOption(2)))
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011-2019 Asakusa Framework Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.asakusafw.spark.runtime
+package util
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class BloomFilterSpecTest extends BloomFilterSpec
+
+class BloomFilterSpec extends FlatSpec {
+
+  behavior of classOf[BloomFilter].getSimpleName
+
+  it should "contain all put hashes" in {
+    val filter = new BloomFilter(10000)
+    (0 until 10000).foreach(i => filter.put(i * 31))
+    assert((0 until 10000).forall(i => filter.mightContain(i * 31)))
+  }
+
+  it should "reject most absent hashes" in {
+    val filter = new BloomFilter(10000)
+    (0 until 10000).foreach(i => filter.put(i * 2))
+    val falsePositives = (0 until 10000).count(i => filter.mightContain(i * 2 + 1))
+    assert(falsePositives < 500)
+  }
+
+  it should "handle empty filter" in {
+    val filter = new BloomFilter(0)
+    assert(!filter.mightContain(0))
+    assert(!filter.mightContain(1))
+  }
+}
@@ -64,6 +64,27 @@ class IteratorsSpec extends FlatSpec {
     assert(!grouped.hasNext)
   }
 
+  it should "groupByKey through a shared cursor" in {
+    val iter = Iterator((1, 10), (1, 11), (2, 20), (2, 21))
+
+    val grouped = iter.groupByKey()
+
+    val (key1, group1) = grouped.next()
+    assert(key1 === 1)
+    assert(group1.next() === 10)
+
+    val (key2, group2) = grouped.next()
+    assert(key2 === 2)
+
+    // every group is served by the same cursor, so group1 now yields the values of group2.
+    assert(group1 eq group2)
+    assert(group1.next() === 20)
+    assert(group2.next() === 21)
+    assert(!group1.hasNext)
+
+    assert(!grouped.hasNext)
+  }
+
   it should "sortmerge" in {
     val left = Iterator((1, 10), (1, 11), (2, 20), (4, 40))
     val right = Iterator((1, 12), (2, 21), (3, 30), (4, 41))
@@ -71,4 +92,62 @@ class IteratorsSpec extends FlatSpec {
     assert(left.sortmerge(right).toSeq === Seq(
       (1, 10), (1, 11), (1, 12), (2, 20), (2, 21), (3, 30), (4, 40), (4, 41)))
   }
+
+  it should "merge" in {
+    val iters = Seq(
+      Iterator((1, 10), (1, 11), (2, 20), (4, 40)),
+      Iterator((1, 12), (2, 21), (3, 30), (4, 41)),
+      Iterator.empty,
+      Iterator((0, 0), (3, 31), (5, 50)))
+
+    assert(merge(iters).toSeq === Seq(
+      (0, 0), (1, 10), (1, 11), (1, 12), (2, 20), (2, 21), (3, 30), (3, 31),
+      (4, 40), (4, 41), (5, 50)))
+  }
+
+  it should "merge many iterators" in {
+    val iters = (0 until 9).map(i => (0 until 100).iterator.map(j => (j * 9 + (8 - i), i)))
+
+    assert(merge(iters).map(_._1).toSeq === (0 until 900))
+  }
+
+  it should "cogroup" in {
+    val iters = Seq(
+      Iterator((1, 10), (1, 11), (2, 20)),
+      Iterator((2, 21), (3, 30)),
+      Iterator.empty,
+      Iterator((0, 0), (1, 12), (3, 31), (3, 32)))
+
+    val cogrouped = cogroup(iters).map {
+      case (k, groups) => (k, groups.map(_.toList).toVector)
+    }.toList
+    assert(cogrouped === Seq(
+      (0, Vector(Seq.empty, Seq.empty, Seq.empty, Seq(0))),
+      (1, Vector(Seq(10, 11), Seq.empty, Seq.empty, Seq(12))),
+      (2, Vector(Seq(20), Seq(21), Seq.empty, Seq.empty)),
+      (3, Vector(Seq.empty, Seq(30), Seq.empty, Seq(31, 32)))))
+  }
+
+  it should "cogroup through a shared cursor" in {
+    val cursor = new CoGroupCursor(Seq(
+      Iterator((1, 10), (2, 20)),
+      Iterator((2, 21), (3, 30))))
+
+    assert(cursor.hasNextGroup)
+    assert(cursor.nextGroup() === 1)
+    val groups = cursor.groups
+    assert(groups(0).toList === Seq(10))
+    assert(groups(1).toList === Seq.empty)
+
+    assert(cursor.nextGroup() === 2)
+    assert(cursor.groups eq groups)
+    assert(groups(0).toList === Seq(20))
+    assert(groups(1).toList === Seq(21))
+
+    assert(cursor.nextGroup() === 3)
+    assert(groups(0).toList === Seq.empty)
+    assert(groups(1).toList === Seq(30))
+
+    assert(!cursor.hasNextGroup)
+  }
 }